@@ -0,0 +1,76 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class PlaylistLibraryTest {
+    private PlaylistLibrary library;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        library = new PlaylistLibrary(context, null, new TrackRegistry());
+    }
+
+    @After
+    public void tearDown() {
+        library.close();
+    }
+
+    private static List<PlaylistLibrary.Upsert> playlist(String id, String... tracks) {
+        return Collections.singletonList(new PlaylistLibrary.Upsert(id, new ContentValues(), Arrays.asList(tracks)));
+    }
+
+    private int storedTracks() {
+        try (Cursor cursor = library.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM tracks", null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    @Test
+    public void intern_keepsIdAfterUnrelatedSync() {
+        int[] first = library.intern(Arrays.asList("content://queue/a", "content://queue/b"));
+
+        library.sync(playlist("saved", "content://saved/x"));
+        int[] again = library.intern(Collections.singletonList("content://queue/a"));
+
+        assertEquals(first[0], again[0]);
+    }
+
+    @Test
+    public void intern_sharesIdsWithStoredPlaylists() {
+        library.upsertAll(playlist("saved", "content://shared", "content://other"));
+
+        int[] ids = library.intern(Arrays.asList("content://other", "content://shared"));
+
+        assertEquals(2, storedTracks());
+        assertNotEquals(ids[0], ids[1]);
+    }
+
+    @Test
+    public void delete_prunesTracksNoLongerUsed() {
+        library.upsertAll(playlist("one", "content://a", "content://b"));
+        library.upsertAll(playlist("two", "content://b", "content://c"));
+        library.intern(Collections.singletonList("content://c"));
+
+        library.deleteAll(Collections.singletonList("two"));
+        assertEquals(3, storedTracks());
+
+        library.clear();
+        assertEquals(1, storedTracks());
+    }
+}
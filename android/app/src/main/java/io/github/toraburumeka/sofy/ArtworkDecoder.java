@@ -0,0 +1,101 @@
+package io.github.toraburumeka.sofy;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.InputStream;
+
+/**
+ * Decodes artwork no larger than needed: bounds are read first, the image is
+ * subsampled towards the target size and until it fits the memory budget, and
+ * opaque formats are decoded as RGB_565.
+ */
+public class ArtworkDecoder {
+    private static final String TAG = "ArtworkDecoder";
+
+    private final int maxSize;
+    private final long budgetBytes;
+
+    /**
+     * @param maxSize     longest side of the returned bitmap in pixels
+     * @param budgetBytes upper bound for a single decoded bitmap
+     */
+    public ArtworkDecoder(int maxSize, long budgetBytes) {
+        this.maxSize = maxSize;
+        this.budgetBytes = budgetBytes;
+    }
+
+    public Bitmap decode(byte[] data) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+        return scale(BitmapFactory.decodeByteArray(data, 0, data.length, optionsFor(bounds)));
+    }
+
+    public Bitmap decode(ContentResolver resolver, Uri uri) {
+        try {
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                if (in == null) return null;
+                BitmapFactory.decodeStream(in, null, bounds);
+            }
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+            try (InputStream in = resolver.openInputStream(uri)) {
+                if (in == null) return null;
+                return scale(BitmapFactory.decodeStream(in, null, optionsFor(bounds)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to decode " + uri + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private BitmapFactory.Options optionsFor(BitmapFactory.Options bounds) {
+        boolean opaque = isOpaque(bounds.outMimeType);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        options.inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, maxSize, budgetBytes, opaque ? 2 : 4);
+        return options;
+    }
+
+    private Bitmap scale(Bitmap bitmap) {
+        if (bitmap == null) return null;
+
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longest <= maxSize) return bitmap;
+
+        float scale = (float) maxSize / longest;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+            Math.max(1, Math.round(bitmap.getWidth() * scale)),
+            Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+        if (scaled != bitmap) bitmap.recycle();
+        return scaled;
+    }
+
+    /**
+     * @return the largest power-of-two subsample that keeps the longest side at
+     *         or above maxSize, raised further until the decoded pixels fit the budget.
+     */
+    static int sampleSize(int width, int height, int maxSize, long budgetBytes, int bytesPerPixel) {
+        int sample = 1;
+        while (Math.max(width, height) / (sample * 2) >= maxSize) {
+            sample *= 2;
+        }
+        while ((long) (width / sample) * (height / sample) * bytesPerPixel > budgetBytes
+                && Math.max(width, height) / sample > 1) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    static boolean isOpaque(String mimeType) {
+        return "image/jpeg".equals(mimeType);
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.toraburumeka.sofy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/** Whole-file writes that readers never see half done. */
+final class AtomicFiles {
+    private AtomicFiles() {}
+
+    interface Writer {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    /** Writes to a temporary file and renames it over the target. */
+    static void write(File file, Writer writer) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            writer.writeTo(out);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package io.github.toraburumeka.sofy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads track durations straight from container headers (MP3 Xing/VBRI/CBR,
+ * FLAC STREAMINFO, MP4 mvhd, Ogg granule position, WAV, AAC ADTS) so that the
+ * native extractor is only needed for files we do not recognise.
+ * Plain Java on purpose: it only touches a {@link FileChannel}.
+ */
+public final class AudioHeaderParser {
+    public static final long UNKNOWN = -1;
+
+    private static final int MP3_SYNC_WINDOW = 64 * 1024;
+    private static final int OGG_TAIL_WINDOW = 64 * 1024;
+    private static final int ADTS_SAMPLE_FRAMES = 256;
+    private static final int MAX_BOXES = 64;
+
+    private static final int[] MP3_SAMPLE_RATES = {44100, 48000, 32000};
+    private static final int[][] MP3_BITRATES = {
+        {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+        {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+    private static final int[] ADTS_SAMPLE_RATES = {
+        96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+
+    private AudioHeaderParser() {}
+
+    /**
+     * @return duration in milliseconds, or {@link #UNKNOWN} if the format is not
+     * recognised or the header does not carry enough information.
+     */
+    public static long parseDurationMs(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        byte[] head = read(channel, 0, 12);
+        if (head == null) return UNKNOWN;
+
+        long offset = 0;
+        if (startsWith(head, 0, "ID3")) {
+            offset = id3v2Size(head);
+            head = read(channel, offset, 12);
+            if (head == null) return UNKNOWN;
+        }
+
+        if (startsWith(head, 0, "fLaC")) {
+            return parseFlac(channel, offset);
+        }
+        if (startsWith(head, 0, "OggS")) {
+            return parseOgg(channel, offset, fileSize);
+        }
+        if (startsWith(head, 0, "RIFF") && startsWith(head, 8, "WAVE")) {
+            return parseWav(channel, offset, fileSize);
+        }
+        if (startsWith(head, 4, "ftyp")) {
+            return parseMp4(channel, offset, fileSize);
+        }
+        if (isAdtsHeader(head, 0)) {
+            return parseAdts(channel, offset, fileSize);
+        }
+        return parseMp3(channel, offset, fileSize);
+    }
+
+    private static long id3v2Size(byte[] head) {
+        long size = ((head[6] & 0x7F) << 21) | ((head[7] & 0x7F) << 14)
+            | ((head[8] & 0x7F) << 7) | (head[9] & 0x7F);
+        boolean hasFooter = (head[5] & 0x10) != 0;
+        return 10 + size + (hasFooter ? 10 : 0);
+    }
+
+    // --- FLAC ---
+
+    private static long parseFlac(FileChannel channel, long offset) throws IOException {
+        byte[] block = read(channel, offset + 4, 4 + 34);
+        if (block == null || (block[0] & 0x7F) != 0) return UNKNOWN;
+
+        int sampleRate = ((block[14] & 0xFF) << 12) | ((block[15] & 0xFF) << 4) | ((block[16] & 0xF0) >> 4);
+        long totalSamples = ((long) (block[17] & 0x0F) << 32) | u32be(block, 18);
+        if (sampleRate <= 0 || totalSamples <= 0) return UNKNOWN;
+        return totalSamples * 1000 / sampleRate;
+    }
+
+    // --- WAV ---
+
+    private static long parseWav(FileChannel channel, long offset, long fileSize) throws IOException {
+        long pos = offset + 12;
+        long byteRate = 0;
+        while (pos + 8 <= fileSize) {
+            byte[] chunk = read(channel, pos, 8);
+            if (chunk == null) return UNKNOWN;
+            long chunkSize = u32le(chunk, 4);
+
+            if (startsWith(chunk, 0, "fmt ")) {
+                byte[] fmt = read(channel, pos + 8, 16);
+                if (fmt == null) return UNKNOWN;
+                byteRate = u32le(fmt, 8);
+            } else if (startsWith(chunk, 0, "data")) {
+                if (byteRate <= 0) return UNKNOWN;
+                long available = fileSize - (pos + 8);
+                long dataSize = chunkSize == 0xFFFFFFFFL || chunkSize > available ? available : chunkSize;
+                return dataSize * 1000 / byteRate;
+            }
+            pos += 8 + chunkSize + (chunkSize & 1);
+        }
+        return UNKNOWN;
+    }
+
+    // --- MP4 / M4A ---
+
+    private static long parseMp4(FileChannel channel, long offset, long fileSize) throws IOException {
+        long[] moov = findBox(channel, offset, fileSize, "moov");
+        if (moov == null) return UNKNOWN;
+        long[] mvhd = findBox(channel, moov[0], moov[1], "mvhd");
+        if (mvhd == null) return UNKNOWN;
+
+        byte[] body = read(channel, mvhd[0], 32);
+        if (body == null) return UNKNOWN;
+
+        long timescale;
+        long duration;
+        if (body[0] == 1) {
+            timescale = u32be(body, 20);
+            duration = (u32be(body, 24) << 32) | u32be(body, 28);
+        } else {
+            timescale = u32be(body, 12);
+            duration = u32be(body, 16);
+        }
+        if (timescale <= 0 || duration <= 0 || duration == 0xFFFFFFFFL) return UNKNOWN;
+        return duration * 1000 / timescale;
+    }
+
+    /** @return {payloadStart, boxEnd} of the first box of the given type in [start, end). */
+    private static long[] findBox(FileChannel channel, long start, long end, String type) throws IOException {
+        long pos = start;
+        for (int i = 0; i < MAX_BOXES && pos + 8 <= end; i++) {
+            byte[] header = read(channel, pos, 16);
+            if (header == null) {
+                header = read(channel, pos, 8);
+                if (header == null) return null;
+            }
+            long size = u32be(header, 0);
+            int headerSize = 8;
+            if (size == 1) {
+                if (header.length < 16) return null;
+                size = (u32be(header, 8) << 32) | u32be(header, 12);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < headerSize) return null;
+
+            if (startsWith(header, 4, type)) {
+                return new long[] {pos + headerSize, Math.min(pos + size, end)};
+            }
+            pos += size;
+        }
+        return null;
+    }
+
+    // --- Ogg (Vorbis / Opus) ---
+
+    private static long parseOgg(FileChannel channel, long offset, long fileSize) throws IOException {
+        byte[] first = read(channel, offset, 27 + 255);
+        if (first == null) first = read(channel, offset, (int) Math.min(fileSize - offset, 27 + 255));
+        if (first == null || first.length < 28) return UNKNOWN;
+
+        long serial = u32le(first, 14);
+        int segments = first[26] & 0xFF;
+        int packet = 27 + segments;
+        if (packet + 19 > first.length) return UNKNOWN;
+
+        long sampleRate;
+        long preSkip = 0;
+        if (first[packet] == 0x01 && startsWith(first, packet + 1, "vorbis")) {
+            sampleRate = u32le(first, packet + 12);
+        } else if (startsWith(first, packet, "OpusHead")) {
+            sampleRate = 48000;
+            preSkip = (first[packet + 10] & 0xFF) | ((first[packet + 11] & 0xFF) << 8);
+        } else {
+            return UNKNOWN;
+        }
+        if (sampleRate <= 0) return UNKNOWN;
+
+        int tailSize = (int) Math.min(OGG_TAIL_WINDOW, fileSize - offset);
+        long tailStart = fileSize - tailSize;
+        byte[] tail = read(channel, tailStart, tailSize);
+        if (tail == null) return UNKNOWN;
+
+        for (int i = tail.length - 27; i >= 0; i--) {
+            if (tail[i] != 'O' || !startsWith(tail, i, "OggS")) continue;
+            if (u32le(tail, i + 14) != serial) continue;
+            long granule = u32le(tail, i + 6) | (u32le(tail, i + 10) << 32);
+            if (granule == -1) continue;
+
+            long samples = granule - preSkip;
+            return samples > 0 ? samples * 1000 / sampleRate : UNKNOWN;
+        }
+        return UNKNOWN;
+    }
+
+    // --- AAC ADTS ---
+
+    private static boolean isAdtsHeader(byte[] b, int i) {
+        return (b[i] & 0xFF) == 0xFF && (b[i + 1] & 0xF6) == 0xF0;
+    }
+
+    private static long parseAdts(FileChannel channel, long offset, long fileSize) throws IOException {
+        long pos = offset;
+        long bytes = 0;
+        long samples = 0;
+        int sampleRate = 0;
+        int frames = 0;
+
+        while (frames < ADTS_SAMPLE_FRAMES && pos + 7 <= fileSize) {
+            byte[] h = read(channel, pos, 7);
+            if (h == null || !isAdtsHeader(h, 0)) break;
+
+            int rateIndex = (h[2] >> 2) & 0x0F;
+            if (rateIndex >= ADTS_SAMPLE_RATES.length) return UNKNOWN;
+            sampleRate = ADTS_SAMPLE_RATES[rateIndex];
+
+            int frameLength = ((h[3] & 0x03) << 11) | ((h[4] & 0xFF) << 3) | ((h[5] & 0xE0) >> 5);
+            if (frameLength < 7) break;
+
+            samples += 1024L * ((h[6] & 0x03) + 1);
+            bytes += frameLength;
+            pos += frameLength;
+            frames++;
+        }
+        if (frames == 0 || sampleRate == 0) return UNKNOWN;
+
+        long walkedMs = samples * 1000 / sampleRate;
+        if (pos >= fileSize) return walkedMs;
+        return walkedMs * (fileSize - offset) / bytes;
+    }
+
+    // --- MP3 ---
+
+    private static long parseMp3(FileChannel channel, long offset, long fileSize) throws IOException {
+        int window = (int) Math.min(MP3_SYNC_WINDOW, fileSize - offset);
+        byte[] buf = read(channel, offset, window);
+        if (buf == null) return UNKNOWN;
+
+        // MP3 is the fallback for unrecognised files, so a lone frame sync is not
+        // trusted: the frame it describes must be followed by a matching one.
+        for (int i = 0; i + 4 <= buf.length; i++) {
+            Mp3Frame frame = Mp3Frame.parse(buf, i);
+            if (frame == null) continue;
+
+            int next = i + frame.length;
+            byte[] header = next + 4 <= buf.length ? buf : read(channel, offset + next, 4);
+            Mp3Frame following = header == null ? null : Mp3Frame.parse(header, header == buf ? next : 0);
+            if (following == null || !following.matches(frame)) continue;
+
+            return mp3Duration(channel, buf, i, offset + i, fileSize, frame);
+        }
+        return UNKNOWN;
+    }
+
+    private static long mp3Duration(FileChannel channel, byte[] buf, int i, long frameStart,
+                                    long fileSize, Mp3Frame frame) throws IOException {
+        int xing = i + 4 + frame.sideInfoSize;
+        if (xing + 12 <= buf.length
+                && (startsWith(buf, xing, "Xing") || startsWith(buf, xing, "Info"))
+                && (u32be(buf, xing + 4) & 0x1) != 0) {
+            long frames = u32be(buf, xing + 8);
+            if (frames > 0) return frames * frame.samplesPerFrame * 1000 / frame.sampleRate;
+        }
+
+        int vbri = i + 4 + 32;
+        if (vbri + 18 <= buf.length && startsWith(buf, vbri, "VBRI")) {
+            long frames = u32be(buf, vbri + 14);
+            if (frames > 0) return frames * frame.samplesPerFrame * 1000 / frame.sampleRate;
+        }
+
+        long audioBytes = fileSize - frameStart;
+        if (fileSize >= 128) {
+            byte[] tag = read(channel, fileSize - 128, 3);
+            if (tag != null && startsWith(tag, 0, "TAG")) audioBytes -= 128;
+        }
+        return audioBytes * 8 / frame.bitrateKbps;
+    }
+
+    private static final class Mp3Frame {
+        int version;
+        int layer;
+        int sampleRate;
+        int bitrateKbps;
+        int samplesPerFrame;
+        int sideInfoSize;
+        int length;
+
+        static Mp3Frame parse(byte[] b, int i) {
+            if ((b[i] & 0xFF) != 0xFF || (b[i + 1] & 0xE0) != 0xE0) return null;
+
+            int version = (b[i + 1] >> 3) & 0x03;
+            int layer = (b[i + 1] >> 1) & 0x03;
+            int bitrateIndex = (b[i + 2] >> 4) & 0x0F;
+            int rateIndex = (b[i + 2] >> 2) & 0x03;
+            int padding = (b[i + 2] >> 1) & 0x01;
+            boolean mono = ((b[i + 3] >> 6) & 0x03) == 3;
+
+            if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+                return null;
+            }
+
+            boolean mpeg1 = version == 3;
+            int table;
+            if (mpeg1) {
+                table = 3 - layer;
+            } else {
+                table = layer == 3 ? 3 : 4;
+            }
+
+            Mp3Frame frame = new Mp3Frame();
+            frame.version = version;
+            frame.layer = layer;
+            frame.sampleRate = MP3_SAMPLE_RATES[rateIndex] >> (mpeg1 ? 0 : version == 2 ? 1 : 2);
+            frame.bitrateKbps = MP3_BITRATES[table][bitrateIndex];
+
+            if (layer == 3) {
+                frame.samplesPerFrame = 384;
+                frame.length = (12000 * frame.bitrateKbps / frame.sampleRate + padding) * 4;
+            } else if (layer == 2 || mpeg1) {
+                frame.samplesPerFrame = 1152;
+                frame.length = 144000 * frame.bitrateKbps / frame.sampleRate + padding;
+            } else {
+                frame.samplesPerFrame = 576;
+                frame.length = 72000 * frame.bitrateKbps / frame.sampleRate + padding;
+            }
+
+            if (mpeg1) {
+                frame.sideInfoSize = mono ? 17 : 32;
+            } else {
+                frame.sideInfoSize = mono ? 9 : 17;
+            }
+            return frame.length > 4 ? frame : null;
+        }
+
+        boolean matches(Mp3Frame other) {
+            return version == other.version && layer == other.layer && sampleRate == other.sampleRate;
+        }
+    }
+
+    // --- helpers ---
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0 || length <= 0) return null;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) break;
+        }
+        return buffer.position() == length ? buffer.array() : null;
+    }
+
+    private static boolean startsWith(byte[] b, int offset, String magic) {
+        byte[] m = magic.getBytes(StandardCharsets.US_ASCII);
+        if (offset < 0 || offset + m.length > b.length) return false;
+        for (int i = 0; i < m.length; i++) {
+            if (b[offset + i] != m[i]) return false;
+        }
+        return true;
+    }
+
+    private static long u32be(byte[] b, int i) {
+        return ((long) (b[i] & 0xFF) << 24) | ((b[i + 1] & 0xFF) << 16)
+            | ((b[i + 2] & 0xFF) << 8) | (b[i + 3] & 0xFF);
+    }
+
+    private static long u32le(byte[] b, int i) {
+        return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8)
+            | ((b[i + 2] & 0xFF) << 16) | ((long) (b[i + 3] & 0xFF) << 24);
+    }
+}
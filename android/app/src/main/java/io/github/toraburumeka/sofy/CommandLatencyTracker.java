@@ -0,0 +1,81 @@
+package io.github.toraburumeka.sofy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-command latency samples, keeping running totals and a fixed window
+ * of recent samples for percentiles. Safe to record from any thread.
+ */
+public class CommandLatencyTracker {
+    private static final int WINDOW = 64;
+
+    public static class Stats {
+        public final long count;
+        public final double meanMs;
+        public final double p95Ms;
+        public final double maxMs;
+        public final double lastMs;
+
+        Stats(long count, double meanMs, double p95Ms, double maxMs, double lastMs) {
+            this.count = count;
+            this.meanMs = meanMs;
+            this.p95Ms = p95Ms;
+            this.maxMs = maxMs;
+            this.lastMs = lastMs;
+        }
+    }
+
+    private static class Series {
+        final long[] window = new long[WINDOW];
+        long count;
+        long totalNanos;
+        long maxNanos;
+        long lastNanos;
+
+        void add(long nanos) {
+            window[(int) (count % WINDOW)] = nanos;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            lastNanos = nanos;
+        }
+
+        Stats stats() {
+            int size = (int) Math.min(count, WINDOW);
+            long[] sorted = Arrays.copyOf(window, size);
+            Arrays.sort(sorted);
+            long p95 = size > 0 ? sorted[Math.min(size - 1, (int) Math.ceil(size * 0.95) - 1)] : 0;
+            return new Stats(count, count > 0 ? toMs(totalNanos) / count : 0,
+                toMs(p95), toMs(maxNanos), toMs(lastNanos));
+        }
+    }
+
+    private final Map<String, Series> series = new LinkedHashMap<>();
+
+    public synchronized void record(String command, long nanos) {
+        Series s = series.get(command);
+        if (s == null) {
+            s = new Series();
+            series.put(command, s);
+        }
+        s.add(Math.max(0, nanos));
+    }
+
+    public synchronized Map<String, Stats> snapshot() {
+        Map<String, Stats> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().stats());
+        }
+        return result;
+    }
+
+    public synchronized void reset() {
+        series.clear();
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
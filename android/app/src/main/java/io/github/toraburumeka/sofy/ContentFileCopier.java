@@ -0,0 +1,194 @@
+package io.github.toraburumeka.sofy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies into a flat directory through channel transfers. The copy is written
+ * to a temp file and renamed into place, and is skipped when a file with the
+ * same content already exists there. Only files of equal size are hashed.
+ */
+public class ContentFileCopier {
+    private static final String TEMP_SUFFIX = ".part";
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    public static class Result {
+        public final File file;
+        public final boolean deduplicated;
+
+        Result(File file, boolean deduplicated) {
+            this.file = file;
+            this.deduplicated = deduplicated;
+        }
+    }
+
+    private static class CachedHash {
+        final long size;
+        final long modified;
+        final String hash;
+
+        CachedHash(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    private final File dir;
+    private final Map<String, CachedHash> hashes = new HashMap<>();
+
+    public ContentFileCopier(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @param size source length in bytes, or a negative value if unknown. A known
+     *             size on a FileChannel source lets duplicates be found before
+     *             anything is written; such a channel must be seekable.
+     * @return the file holding the content, which is an existing file with a
+     *         different name when the copy was deduplicated.
+     */
+    public Result copy(ReadableByteChannel source, long size, String destName) throws IOException {
+        File dest = new File(dir, destName);
+
+        if (size >= 0 && source instanceof FileChannel) {
+            List<File> candidates = sameSize(size, dest, null);
+            if (!candidates.isEmpty()) {
+                FileChannel channel = (FileChannel) source;
+                long start = channel.position();
+                String hash = hash(channel);
+                channel.position(start);
+
+                File match = findMatch(candidates, hash);
+                if (match != null) return new Result(match, true);
+            }
+        }
+
+        File tmp = File.createTempFile(".copy", TEMP_SUFFIX, dir);
+        try (FileChannel out = new FileOutputStream(tmp).getChannel()) {
+            transfer(source, out, size);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        if (size < 0) {
+            List<File> candidates = sameSize(tmp.length(), dest, tmp);
+            if (!candidates.isEmpty()) {
+                File match = findMatch(candidates, hashFile(tmp));
+                if (match != null) {
+                    tmp.delete();
+                    return new Result(match, true);
+                }
+            }
+        }
+
+        if (!tmp.renameTo(dest)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + dest);
+        }
+        synchronized (hashes) {
+            hashes.remove(dest.getAbsolutePath());
+        }
+        return new Result(dest, false);
+    }
+
+    private static void transfer(ReadableByteChannel source, FileChannel out, long size) throws IOException {
+        long position = 0;
+        while (size < 0 || position < size) {
+            long chunk = size < 0 ? TRANSFER_CHUNK : Math.min(TRANSFER_CHUNK, size - position);
+            long transferred = out.transferFrom(source, position, chunk);
+            if (transferred <= 0) break;
+            position += transferred;
+        }
+        if (size >= 0 && position < size) {
+            throw new IOException("Source ended after " + position + " of " + size + " bytes");
+        }
+    }
+
+    /** @return files in the directory with the given size, the destination first. */
+    private List<File> sameSize(long size, File dest, File exclude) {
+        List<File> result = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) return result;
+
+        for (File file : files) {
+            if (!file.isFile() || file.length() != size || file.equals(exclude)
+                    || file.getName().endsWith(TEMP_SUFFIX)) {
+                continue;
+            }
+            if (file.equals(dest)) {
+                result.add(0, file);
+            } else {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    private File findMatch(List<File> candidates, String hash) throws IOException {
+        for (File candidate : candidates) {
+            if (hash.equals(cachedHash(candidate))) return candidate;
+        }
+        return null;
+    }
+
+    private String cachedHash(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long modified = file.lastModified();
+
+        synchronized (hashes) {
+            CachedHash cached = hashes.get(key);
+            if (cached != null && cached.size == size && cached.modified == modified) {
+                return cached.hash;
+            }
+        }
+
+        String hash = hashFile(file);
+        synchronized (hashes) {
+            hashes.put(key, new CachedHash(size, modified, hash));
+        }
+        return hash;
+    }
+
+    private static String hashFile(File file) throws IOException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            return hash(channel);
+        }
+    }
+
+    static String hash(ReadableByteChannel channel) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
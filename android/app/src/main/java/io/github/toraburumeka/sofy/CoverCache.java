@@ -0,0 +1,182 @@
+package io.github.toraburumeka.sofy;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Embedded track artwork, decoded once per file fingerprint into a downscaled
+ * JPEG under the cache directory, with recently used covers kept in memory by
+ * track URI so a hit costs no provider query. Tracks without artwork get an
+ * empty marker file so they are not probed again. Only one 512 px variant is
+ * stored: the media session and the player view, its only readers, both show
+ * it at full size.
+ */
+public class CoverCache {
+    private static final String TAG = "CoverCache";
+    private static final int MAX_SIZE = 512;
+    private static final long MAX_BITMAP_BYTES = MAX_SIZE * MAX_SIZE * 4;
+    private static final int JPEG_QUALITY = 90;
+    private static final long MAX_DISK_BYTES = 64L * 1024 * 1024;
+
+    public static class Cover {
+        public final File file;
+        public final Bitmap bitmap;
+
+        Cover(File file, Bitmap bitmap) {
+            this.file = file;
+            this.bitmap = bitmap;
+        }
+    }
+
+    private static CoverCache instance;
+
+    public static synchronized CoverCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new CoverCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final File dir;
+    private final LruCache<String, Cover> memory;
+    private final ArtworkDecoder decoder = new ArtworkDecoder(MAX_SIZE, MAX_BITMAP_BYTES);
+
+    private CoverCache(Context context) {
+        this.context = context;
+        this.dir = new File(context.getCacheDir(), "covers");
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+        this.memory = new LruCache<String, Cover>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Cover cover) {
+                return cover.bitmap.getByteCount();
+            }
+        };
+    }
+
+    /** @return the cached cover for the track, or null if it has no embedded artwork. */
+    public Cover get(String trackUri) {
+        Cover cached = memory.get(trackUri);
+        if (cached != null && cached.file.exists()) {
+            return cached;
+        }
+
+        String key = key(trackUri);
+        File file = new File(dir, key + ".jpg");
+        File noCover = new File(dir, key + ".none");
+        if (noCover.exists()) return null;
+
+        if (file.exists()) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis());
+                return remember(trackUri, new Cover(file, bitmap));
+            }
+        }
+
+        byte[] data;
+        try {
+            data = extractEmbeddedPicture(trackUri);
+        } catch (Exception e) {
+            Log.e(TAG, "Error extracting cover: " + e.getMessage());
+            return null;
+        }
+
+        Bitmap bitmap = data != null ? decoder.decode(data) : null;
+        if (bitmap == null) {
+            markMissing(noCover);
+            return null;
+        }
+
+        try {
+            write(file, bitmap);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to store cover: " + e.getMessage());
+            return null;
+        }
+        return remember(trackUri, new Cover(file, bitmap));
+    }
+
+    private Cover remember(String trackUri, Cover cover) {
+        memory.put(trackUri, cover);
+        return cover;
+    }
+
+    /** The disk key, which changes with the file's size and modification time. */
+    private String key(String trackUri) {
+        DurationIndex.Entry entry = DurationIndex.getInstance(context).fingerprint(trackUri);
+        String fingerprint = entry != null ? trackUri + "|" + entry.size + "|" + entry.modified : trackUri;
+        return Hashes.sha1Hex(fingerprint);
+    }
+
+    private byte[] extractEmbeddedPicture(String path) throws IOException {
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        try {
+            if (path.startsWith("content://") || path.startsWith("file://")) {
+                mmr.setDataSource(context, Uri.parse(path));
+            } else {
+                try {
+                    mmr.setDataSource(path);
+                } catch (Exception e1) {
+                    mmr.setDataSource(context, Uri.parse("file://" + path));
+                }
+            }
+            return mmr.getEmbeddedPicture();
+        } finally {
+            try {
+                mmr.release();
+            } catch (Exception ignored) {}
+        }
+    }
+
+    private void write(File file, Bitmap bitmap) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+        trimDisk();
+    }
+
+    private void markMissing(File marker) {
+        try {
+            if (dir.exists() || dir.mkdirs()) marker.createNewFile();
+        } catch (IOException ignored) {}
+    }
+
+    private synchronized void trimDisk() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        long total = 0;
+        for (File file : files) total += file.length();
+        if (total <= MAX_DISK_BYTES) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= MAX_DISK_BYTES * 3 / 4) break;
+            total -= file.length();
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.toraburumeka.sofy;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lists SAF tree children with one projected query per directory instead of
+ * the several ContentResolver round-trips DocumentFile makes per entry.
+ */
+public class DocumentTreeScanner {
+    private static final String[] PROJECTION = {
+        DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+        DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+        DocumentsContract.Document.COLUMN_MIME_TYPE,
+        DocumentsContract.Document.COLUMN_SIZE,
+        DocumentsContract.Document.COLUMN_LAST_MODIFIED
+    };
+
+    public interface ProgressListener {
+        void onProgress(int current, int total);
+    }
+
+    public interface TreeProgressListener {
+        void onProgress(int scannedDirectories, int knownDirectories, int files);
+    }
+
+    public static class TreeResult {
+        public final List<Entry> files;
+        public final boolean truncated;
+
+        TreeResult(List<Entry> files, boolean truncated) {
+            this.files = files;
+            this.truncated = truncated;
+        }
+    }
+
+    public static class Entry {
+        public final String documentId;
+        public final String name;
+        public final String mimeType;
+        public final long size;
+        public final long lastModified;
+        public final Uri uri;
+        public final String path;
+
+        Entry(String documentId, String name, String mimeType, long size, long lastModified,
+              Uri uri, String path) {
+            this.documentId = documentId;
+            this.name = name;
+            this.mimeType = mimeType;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.uri = uri;
+            this.path = path;
+        }
+
+        public boolean isDirectory() {
+            return DocumentsContract.Document.MIME_TYPE_DIR.equals(mimeType);
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final Uri treeUri;
+
+    public DocumentTreeScanner(ContentResolver resolver, Uri treeUri) {
+        this.resolver = resolver;
+        this.treeUri = treeUri;
+    }
+
+    public String getRootDocumentId() {
+        return DocumentsContract.getTreeDocumentId(treeUri);
+    }
+
+    public List<Entry> listChildren(String parentDocumentId, ProgressListener listener) {
+        return listChildren(parentDocumentId, "", listener);
+    }
+
+    /**
+     * Walks the whole tree on the given pool and returns every file as one flat
+     * list, in directory listing order. Stops descending at maxDepth and stops
+     * collecting once maxFiles files were found.
+     */
+    public TreeResult scanTree(ForkJoinPool pool, int maxDepth, int maxFiles, TreeProgressListener listener) {
+        TreeWalk walk = new TreeWalk(maxDepth, maxFiles, listener);
+        walk.knownDirectories.incrementAndGet();
+        List<Entry> files = pool.invoke(walk.new DirectoryTask(getRootDocumentId(), "", 0));
+        return new TreeResult(files, walk.truncated.get());
+    }
+
+    private List<Entry> listChildren(String parentDocumentId, String parentPath, ProgressListener listener) {
+        Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentDocumentId);
+        List<Entry> entries = new ArrayList<>();
+
+        try (Cursor cursor = resolver.query(childrenUri, PROJECTION, null, null, null)) {
+            if (cursor == null) {
+                return entries;
+            }
+
+            int total = cursor.getCount();
+            if (listener != null) listener.onProgress(0, total);
+
+            int current = 0;
+            while (cursor.moveToNext()) {
+                String documentId = cursor.getString(0);
+                String name = cursor.getString(1);
+                entries.add(new Entry(
+                    documentId,
+                    name,
+                    cursor.getString(2),
+                    cursor.isNull(3) ? 0 : cursor.getLong(3),
+                    cursor.isNull(4) ? 0 : cursor.getLong(4),
+                    DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId),
+                    parentPath + name
+                ));
+
+                current++;
+                if (listener != null) listener.onProgress(current, total);
+            }
+        }
+        return entries;
+    }
+
+    private class TreeWalk {
+        final int maxDepth;
+        final int maxFiles;
+        final TreeProgressListener listener;
+        final AtomicInteger knownDirectories = new AtomicInteger();
+        final AtomicInteger scannedDirectories = new AtomicInteger();
+        final AtomicInteger fileCount = new AtomicInteger();
+        final AtomicBoolean truncated = new AtomicBoolean(false);
+
+        TreeWalk(int maxDepth, int maxFiles, TreeProgressListener listener) {
+            this.maxDepth = maxDepth;
+            this.maxFiles = maxFiles;
+            this.listener = listener;
+        }
+
+        class DirectoryTask extends RecursiveTask<List<Entry>> {
+            private final String documentId;
+            private final String path;
+            private final int depth;
+
+            DirectoryTask(String documentId, String path, int depth) {
+                this.documentId = documentId;
+                this.path = path;
+                this.depth = depth;
+            }
+
+            @Override
+            protected List<Entry> compute() {
+                List<Entry> files = new ArrayList<>();
+                List<DirectoryTask> subtasks = new ArrayList<>();
+
+                if (fileCount.get() < maxFiles) {
+                    for (Entry entry : listChildren(documentId, path, null)) {
+                        if (entry.isDirectory()) {
+                            if (depth < maxDepth) {
+                                knownDirectories.incrementAndGet();
+                                subtasks.add(new DirectoryTask(entry.documentId, entry.path + "/", depth + 1));
+                            } else {
+                                truncated.set(true);
+                            }
+                        } else if (fileCount.incrementAndGet() <= maxFiles) {
+                            files.add(entry);
+                        } else {
+                            truncated.set(true);
+                        }
+                    }
+                } else {
+                    truncated.set(true);
+                }
+
+                int scanned = scannedDirectories.incrementAndGet();
+                if (listener != null) {
+                    listener.onProgress(scanned, knownDirectories.get(), Math.min(fileCount.get(), maxFiles));
+                }
+
+                invokeAll(subtasks);
+                for (DirectoryTask subtask : subtasks) {
+                    files.addAll(subtask.join());
+                }
+                return files;
+            }
+        }
+    }
+}
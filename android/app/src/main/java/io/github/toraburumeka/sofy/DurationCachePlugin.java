@@ -2,6 +2,7 @@ package io.github.toraburumeka.sofy;
 
 import android.media.MediaMetadataRetriever;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
 import com.getcapacitor.JSArray;
@@ -13,16 +14,30 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 
 import org.json.JSONArray;
 
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @CapacitorPlugin(name = "DurationCache")
 public class DurationCachePlugin extends Plugin {
     private static final String TAG = "DurationCachePlugin";
+    private static final int MAX_WORKERS = 4;
+    private static final int MAX_CHUNK_SIZE = 32;
+
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final int workerCount = Math.max(1,
+        Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+    private final ExecutorService probePool = Executors.newFixedThreadPool(workerCount);
+
+    private DurationIndex durationIndex;
 
     @Override
     public void load() {
+        durationIndex = DurationIndex.getInstance(getContext());
         Log.d(TAG, "DurationCachePlugin loaded");
     }
 
@@ -32,6 +47,7 @@ public class DurationCachePlugin extends Plugin {
         
         JSONArray tracksArray = call.getArray("tracks");
         String playlistId = call.getString("playlistId", "unknown");
+        boolean stream = call.getBoolean("stream", false);
         
         if (tracksArray == null) {
             Log.e(TAG, "No tracks provided");
@@ -43,55 +59,159 @@ public class DurationCachePlugin extends Plugin {
         Log.d(TAG, "Processing " + totalTracks + " tracks for playlist " + playlistId);
 
         executor.execute(() -> {
-            JSArray durations = new JSArray();
-            long totalDuration = 0;
+            String[] paths = new String[totalTracks];
+            for (int i = 0; i < totalTracks; i++) {
+                paths[i] = tracksArray.optString(i, "");
+            }
 
-            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-            
-            int lastReportedPercent = -1;
+            long[] durations = new long[totalTracks];
+            ProgressReporter progress = new ProgressReporter(playlistId, totalTracks, stream);
+            AtomicInteger nextIndex = new AtomicInteger(0);
+            int chunkSize = Math.max(1, Math.min(MAX_CHUNK_SIZE, totalTracks / (workerCount * 8)));
+            int workers = Math.min(workerCount, (totalTracks + chunkSize - 1) / chunkSize);
 
-            for (int i = 0; i < totalTracks; i++) {
-                long duration = 0;
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                futures.add(probePool.submit(() -> probeChunks(paths, durations, chunkSize, nextIndex, progress)));
+            }
+            for (Future<?> future : futures) {
                 try {
-                    String path = tracksArray.getString(i);
-                    retriever.setDataSource(getContext(), Uri.parse(path));
-                    String durationStr = retriever.extractMetadata(
-                        MediaMetadataRetriever.METADATA_KEY_DURATION
-                    );
-                    if (durationStr != null) {
-                        duration = Long.parseLong(durationStr);
-                    }
+                    future.get();
                 } catch (Exception e) {
-                    Log.w(TAG, "Failed to get duration for track " + i + ": " + e.getMessage());
+                    Log.w(TAG, "Duration worker failed: " + e.getMessage());
                 }
-                durations.put(duration);
+            }
+
+            long totalDuration = 0;
+            for (long duration : durations) {
                 totalDuration += duration;
+            }
 
-                int percent = (int) ((i + 1) * 100 / totalTracks);
-                if (percent >= lastReportedPercent + 5 || i == totalTracks - 1) {
-                    lastReportedPercent = percent;
-                    
-                    JSObject progressData = new JSObject();
-                    progressData.put("playlistId", playlistId);
-                    progressData.put("current", i + 1);
-                    progressData.put("total", totalTracks);
-                    progressData.put("percent", percent);
-                    
-                    notifyListeners("durationProgress", progressData);
+            JSObject result = new JSObject();
+            result.put("totalDuration", totalDuration);
+            result.put("count", totalTracks);
+            if (!stream) {
+                JSArray durationsArray = new JSArray();
+                for (long duration : durations) {
+                    durationsArray.put(duration);
                 }
+                result.put("durations", durationsArray);
             }
 
+            Log.d(TAG, "Total duration calculated: " + totalDuration + "ms for " + totalTracks + " tracks");
+
+            call.resolve(result);
+        });
+    }
+
+    private void probeChunks(String[] paths, long[] durations, int chunkSize,
+                             AtomicInteger nextIndex, ProgressReporter progress) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        List<DurationIndex.Entry> probed = new ArrayList<>();
+        try {
+            int start;
+            while ((start = nextIndex.getAndAdd(chunkSize)) < paths.length) {
+                int end = Math.min(start + chunkSize, paths.length);
+                for (int i = start; i < end; i++) {
+                    DurationIndex.Entry entry = durationIndex.fingerprint(paths[i]);
+                    long cached = entry != null ? durationIndex.lookup(entry) : DurationIndex.MISS;
+                    if (cached != DurationIndex.MISS) {
+                        durations[i] = cached;
+                        continue;
+                    }
+
+                    durations[i] = probeDuration(retriever, i, paths[i]);
+                    if (entry != null && durations[i] > 0) {
+                        entry.duration = durations[i];
+                        probed.add(entry);
+                    }
+                }
+                durationIndex.putAll(probed);
+                probed.clear();
+                progress.chunkDone(start, end, durations);
+            }
+        } finally {
             try {
                 retriever.release();
             } catch (Exception e) {}
+        }
+    }
 
-            JSObject result = new JSObject();
-            result.put("durations", durations);
-            result.put("totalDuration", totalDuration);
+    private long probeDuration(MediaMetadataRetriever retriever, int index, String path) {
+        long headerDuration = probeHeaderDuration(path);
+        if (headerDuration > 0) {
+            return headerDuration;
+        }
+        try {
+            retriever.setDataSource(getContext(), Uri.parse(path));
+            String durationStr = retriever.extractMetadata(
+                MediaMetadataRetriever.METADATA_KEY_DURATION
+            );
+            if (durationStr != null) {
+                return Long.parseLong(durationStr);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to get duration for track " + index + ": " + e.getMessage());
+        }
+        return 0;
+    }
 
-            Log.d(TAG, "Total duration calculated: " + totalDuration + "ms for " + totalTracks + " tracks");
+    private long probeHeaderDuration(String path) {
+        try (ParcelFileDescriptor pfd = getContext().getContentResolver().openFileDescriptor(Uri.parse(path), "r");
+             FileInputStream in = new FileInputStream(pfd.getFileDescriptor())) {
+            return AudioHeaderParser.parseDurationMs(in.getChannel());
+        } catch (Exception e) {
+            return AudioHeaderParser.UNKNOWN;
+        }
+    }
 
-            call.resolve(result);
-        });
+    @Override
+    protected void handleOnDestroy() {
+        super.handleOnDestroy();
+        executor.shutdown();
+        probePool.shutdownNow();
+    }
+
+    private class ProgressReporter {
+        private final String playlistId;
+        private final int total;
+        private final boolean stream;
+        private int completed = 0;
+        private int lastReportedPercent = -1;
+
+        ProgressReporter(String playlistId, int total, boolean stream) {
+            this.playlistId = playlistId;
+            this.total = total;
+            this.stream = stream;
+        }
+
+        synchronized void chunkDone(int start, int end, long[] durations) {
+            if (stream) {
+                JSArray values = new JSArray();
+                for (int i = start; i < end; i++) {
+                    values.put(durations[i]);
+                }
+
+                JSObject chunkData = new JSObject();
+                chunkData.put("playlistId", playlistId);
+                chunkData.put("offset", start);
+                chunkData.put("durations", values);
+                notifyListeners("durationChunk", chunkData);
+            }
+
+            completed += end - start;
+            int percent = (int) ((long) completed * 100 / total);
+            if (percent >= lastReportedPercent + 5 || completed == total) {
+                lastReportedPercent = percent;
+
+                JSObject progressData = new JSObject();
+                progressData.put("playlistId", playlistId);
+                progressData.put("current", completed);
+                progressData.put("total", total);
+                progressData.put("percent", percent);
+
+                notifyListeners("durationProgress", progressData);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package io.github.toraburumeka.sofy;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Persistent track duration index. Entries are keyed by URI and are only
+ * returned while the file's size and last-modified time still match.
+ */
+public class DurationIndex extends SQLiteOpenHelper {
+    private static final String TAG = "DurationIndex";
+    private static final String DB_NAME = "duration_index.db";
+    private static final int DB_VERSION = 1;
+
+    public static final long MISS = -1;
+
+    private static DurationIndex instance;
+
+    public static synchronized DurationIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new DurationIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final Context context;
+
+    private DurationIndex(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+        this.context = context;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE durations ("
+            + "uri TEXT PRIMARY KEY NOT NULL, "
+            + "size INTEGER NOT NULL, "
+            + "modified INTEGER NOT NULL, "
+            + "duration INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS durations");
+        onCreate(db);
+    }
+
+    public static class Entry {
+        final String uri;
+        final long size;
+        final long modified;
+        long duration;
+
+        Entry(String uri, long size, long modified) {
+            this.uri = uri;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    /** @return a fingerprinted entry for the file, or null if it cannot be stat'ed. */
+    public Entry fingerprint(String path) {
+        try {
+            Uri uri = Uri.parse(path);
+            if ("file".equals(uri.getScheme())) {
+                File file = new File(uri.getPath());
+                return file.exists() ? new Entry(path, file.length(), file.lastModified()) : null;
+            }
+
+            String[] projection = {OpenableColumns.SIZE, DocumentsContract.Document.COLUMN_LAST_MODIFIED};
+            try (Cursor cursor = context.getContentResolver().query(uri, projection, null, null, null)) {
+                if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                    long modified = cursor.isNull(1) ? 0 : cursor.getLong(1);
+                    return new Entry(path, cursor.getLong(0), modified);
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Cannot fingerprint " + path + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    public long lookup(Entry entry) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT duration FROM durations WHERE uri = ? AND size = ? AND modified = ?",
+                new String[] {entry.uri, String.valueOf(entry.size), String.valueOf(entry.modified)})) {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Lookup failed: " + e.getMessage());
+        }
+        return MISS;
+    }
+
+    public void putAll(List<Entry> entries) {
+        if (entries.isEmpty()) return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try (SQLiteStatement insert = db.compileStatement(
+                "INSERT OR REPLACE INTO durations (uri, size, modified, duration) VALUES (?, ?, ?, ?)")) {
+            for (Entry entry : entries) {
+                insert.bindString(1, entry.uri);
+                insert.bindLong(2, entry.size);
+                insert.bindLong(3, entry.modified);
+                insert.bindLong(4, entry.duration);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to store " + entries.size() + " durations: " + e.getMessage());
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void removeAll(List<String> uris) {
+        if (uris.isEmpty()) return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try (SQLiteStatement delete = db.compileStatement("DELETE FROM durations WHERE uri = ?")) {
+            for (String uri : uris) {
+                delete.bindString(1, uri);
+                delete.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to remove " + uris.size() + " durations: " + e.getMessage());
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package io.github.toraburumeka.sofy;
 
 import android.app.Activity;
+import android.content.ContentResolver;
 import android.content.Intent;
+import android.database.ContentObserver;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.util.Log;
 import androidx.activity.result.ActivityResult;
 import androidx.documentfile.provider.DocumentFile;
 
@@ -16,20 +23,57 @@ import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.ActivityCallback;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONArray;
+
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 @CapacitorPlugin(name = "FolderPicker")
 public class FolderPickerPlugin extends Plugin {
 
+    private static final String TAG = "FolderPickerPlugin";
+    private static final int DEFAULT_MAX_DEPTH = 8;
+    private static final int DEFAULT_MAX_FILES = 50000;
+    private static final long WATCH_DEBOUNCE_MS = 1500;
+    private static final long WATCH_MAX_WAIT_MS = 10000;
+    // Each watched folder pins an open cursor here and a file observer in the provider.
+    private static final int MAX_WATCHED_DIRECTORIES = 64;
+    private static final String[] WATCH_PROJECTION = {
+        DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+        DocumentsContract.Document.COLUMN_MIME_TYPE
+    };
+
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService copyExecutor = Executors.newSingleThreadExecutor();
+    private final ForkJoinPool scanPool = new ForkJoinPool(
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
     
     private Uri pendingTreeUri = null;
     private String pendingFolderName = null;
+    private FolderSnapshotStore snapshotStore;
+    private ContentFileCopier fileCopier;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, FolderWatch> watches = new HashMap<>();
+
+    @Override
+    public void load() {
+        snapshotStore = new FolderSnapshotStore(getContext().getFilesDir());
+        fileCopier = new ContentFileCopier(getContext().getFilesDir());
+    }
 
     @PluginMethod
     public void pickFolder(PluginCall call) {
@@ -47,64 +91,39 @@ public class FolderPickerPlugin extends Plugin {
         
         final Uri treeUri = pendingTreeUri;
         final String folderName = pendingFolderName;
+        final boolean recursive = call.getBoolean("recursive", false);
+        final int maxDepth = call.getInt("maxDepth", DEFAULT_MAX_DEPTH);
+        final int maxFiles = call.getInt("maxFiles", DEFAULT_MAX_FILES);
+        final MediaClassifier classifier = call.getBoolean("classify", false) ? classifierFrom(call) : null;
         
         pendingTreeUri = null;
         pendingFolderName = null;
         
         executor.execute(() -> {
             try {
-                DocumentFile pickedDir = DocumentFile.fromTreeUri(getContext(), treeUri);
-                
-                if (pickedDir == null) {
-                    call.reject("Cannot read directory");
-                    return;
-                }
-                
-                DocumentFile[] files = pickedDir.listFiles();
-                int totalFiles = files.length;
-
-                JSObject startData = new JSObject();
-                startData.put("folderName", folderName);
-                startData.put("total", totalFiles);
-                startData.put("current", 0);
-                startData.put("percent", 0);
-                notifyListeners("scanProgress", startData);
-                
-                JSArray filesArray = new JSArray();
-                int lastReportedPercent = -1;
-                
-                for (int i = 0; i < totalFiles; i++) {
-                    DocumentFile file = files[i];
-                    
-                    if (file.isFile()) {
-                        String name = file.getName();
-                        String uri = file.getUri().toString();
-                        
-                        JSObject fileObj = new JSObject();
-                        fileObj.put("name", name);
-                        fileObj.put("uri", uri);
-                        fileObj.put("type", file.getType());
-                        fileObj.put("size", file.length());
-                        
-                        filesArray.put(fileObj);
-                    }
+                ScanProgressReporter progress = new ScanProgressReporter(folderName);
+                DocumentTreeScanner.TreeResult tree = scan(treeUri, recursive, maxDepth, maxFiles, progress);
+                List<DocumentTreeScanner.Entry> entries = tree.files;
 
-                    int percent = (int) ((i + 1) * 100 / totalFiles);
-                    if (percent >= lastReportedPercent + 5 || (i + 1) % 10 == 0 || i == totalFiles - 1) {
-                        lastReportedPercent = percent;
-                        
-                        JSObject progressData = new JSObject();
-                        progressData.put("folderName", folderName);
-                        progressData.put("total", totalFiles);
-                        progressData.put("current", i + 1);
-                        progressData.put("percent", percent);
-                        notifyListeners("scanProgress", progressData);
-                    }
+                try {
+                    snapshotStore.save(treeUri.toString(), toSnapshot(entries, recursive, maxDepth, maxFiles));
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to save folder snapshot: " + e.getMessage());
                 }
-                
+
                 JSObject ret = new JSObject();
                 ret.put("folderName", folderName);
-                ret.put("files", filesArray);
+                ret.put("treeUri", treeUri.toString());
+                if (classifier != null) {
+                    putClassified(ret, entries, classifier);
+                } else {
+                    JSArray filesArray = new JSArray();
+                    for (DocumentTreeScanner.Entry entry : entries) {
+                        if (!entry.isDirectory()) filesArray.put(toFileObject(entry));
+                    }
+                    ret.put("files", filesArray);
+                }
+                ret.put("truncated", tree.truncated);
                 call.resolve(ret);
                 
             } catch (Exception e) {
@@ -113,6 +132,225 @@ public class FolderPickerPlugin extends Plugin {
         });
     }
 
+    @PluginMethod
+    public void rescanFolder(PluginCall call) {
+        final String treeUriString = call.getString("treeUri");
+        if (treeUriString == null) {
+            call.reject("No folder provided");
+            return;
+        }
+
+        final MediaClassifier classifier = call.getBoolean("classify", false) ? classifierFrom(call) : null;
+        final Boolean recursive = call.getBoolean("recursive");
+        final Integer maxDepth = call.getInt("maxDepth");
+        final Integer maxFiles = call.getInt("maxFiles");
+
+        executor.execute(() -> {
+            try {
+                call.resolve(rescan(treeUriString, recursive, maxDepth, maxFiles, classifier));
+            } catch (Exception e) {
+                call.reject("Rescan failed: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void watchFolder(PluginCall call) {
+        final String treeUriString = call.getString("treeUri");
+        if (treeUriString == null) {
+            call.reject("No folder provided");
+            return;
+        }
+
+        final MediaClassifier classifier = call.getBoolean("classify", false) ? classifierFrom(call) : null;
+        mainHandler.post(() -> {
+            FolderWatch existing = watches.remove(treeUriString);
+            if (existing != null) existing.stop();
+
+            FolderWatch watch = new FolderWatch(treeUriString, classifier);
+            watches.put(treeUriString, watch);
+            executor.execute(() -> {
+                try {
+                    watch.start();
+                    call.resolve();
+                } catch (Exception e) {
+                    mainHandler.post(() -> {
+                        if (watches.get(treeUriString) == watch) watches.remove(treeUriString);
+                        watch.stop();
+                    });
+                    call.reject("Watch failed: " + e.getMessage());
+                }
+            });
+        });
+    }
+
+    @PluginMethod
+    public void unwatchFolder(PluginCall call) {
+        final String treeUriString = call.getString("treeUri");
+        mainHandler.post(() -> {
+            FolderWatch watch = watches.remove(treeUriString);
+            if (watch != null) watch.stop();
+            call.resolve();
+        });
+    }
+
+    /**
+     * Rescans a tree with the options stored in its snapshot unless overridden,
+     * saves the new snapshot and returns the delta against the previous one.
+     */
+    private JSObject rescan(String treeUriString, Boolean recursiveOption, Integer maxDepthOption,
+                            Integer maxFilesOption, MediaClassifier classifier) throws Exception {
+        Uri treeUri = Uri.parse(treeUriString);
+        FolderSnapshotStore.Snapshot previous = snapshotStore.load(treeUriString);
+        boolean recursive = recursiveOption != null ? recursiveOption : previous != null && previous.recursive;
+        int maxDepth = maxDepthOption != null ? maxDepthOption
+            : previous != null ? previous.maxDepth : DEFAULT_MAX_DEPTH;
+        int maxFiles = maxFilesOption != null ? maxFilesOption
+            : previous != null ? previous.maxFiles : DEFAULT_MAX_FILES;
+
+        DocumentTreeScanner.TreeResult tree = scan(treeUri, recursive, maxDepth, maxFiles, null);
+        FolderSnapshotStore.Snapshot current = toSnapshot(tree.files, recursive, maxDepth, maxFiles);
+        FolderSnapshotStore.Diff diff = FolderSnapshotStore.diff(previous, current);
+
+        if (previous == null || !diff.isEmpty()) {
+            snapshotStore.save(treeUriString, current);
+        }
+
+        List<String> removedUris = new ArrayList<>();
+        for (FolderSnapshotStore.Record record : diff.removed) {
+            removedUris.add(documentUri(treeUri, record));
+        }
+        DurationIndex.getInstance(getContext()).removeAll(removedUris);
+
+        JSObject ret = new JSObject();
+        ret.put("treeUri", treeUriString);
+        ret.put("added", toFileArray(treeUri, diff.added, classifier));
+        ret.put("removed", toFileArray(treeUri, diff.removed, classifier));
+        ret.put("changed", toFileArray(treeUri, diff.changed, classifier));
+        ret.put("unchanged", diff.unchanged);
+        if (classifier != null) {
+            DocumentTreeScanner.Entry cover = findCover(tree.files, classifier);
+            ret.put("cover", cover != null ? toFileObject(cover) : null);
+        }
+        ret.put("truncated", tree.truncated);
+        ret.put("empty", diff.isEmpty());
+        return ret;
+    }
+
+    private DocumentTreeScanner.TreeResult scan(Uri treeUri, boolean recursive, int maxDepth, int maxFiles,
+                                                ScanProgressReporter progress) {
+        DocumentTreeScanner scanner = new DocumentTreeScanner(getContext().getContentResolver(), treeUri);
+        if (recursive) {
+            return scanner.scanTree(scanPool, maxDepth, maxFiles, progress != null ? progress::reportTree : null);
+        }
+
+        List<DocumentTreeScanner.Entry> files = new ArrayList<>();
+        for (DocumentTreeScanner.Entry entry :
+                scanner.listChildren(scanner.getRootDocumentId(), progress != null ? progress::report : null)) {
+            if (!entry.isDirectory()) files.add(entry);
+        }
+        return new DocumentTreeScanner.TreeResult(files, false);
+    }
+
+    private static FolderSnapshotStore.Snapshot toSnapshot(List<DocumentTreeScanner.Entry> entries,
+                                                           boolean recursive, int maxDepth, int maxFiles) {
+        FolderSnapshotStore.Snapshot snapshot = new FolderSnapshotStore.Snapshot(recursive, maxDepth, maxFiles);
+        for (DocumentTreeScanner.Entry entry : entries) {
+            if (entry.isDirectory()) continue;
+            snapshot.add(new FolderSnapshotStore.Record(
+                entry.documentId, entry.path, entry.mimeType, entry.size, entry.lastModified));
+        }
+        return snapshot;
+    }
+
+    private static String documentUri(Uri treeUri, FolderSnapshotStore.Record record) {
+        return DocumentsContract.buildDocumentUriUsingTree(treeUri, record.documentId).toString();
+    }
+
+    private static JSArray toFileArray(Uri treeUri, List<FolderSnapshotStore.Record> records,
+                                       MediaClassifier classifier) {
+        JSArray array = new JSArray();
+        for (FolderSnapshotStore.Record record : records) {
+            if (classifier != null && !classifier.isAudio(record.name(), record.mimeType)) continue;
+
+            JSObject fileObj = new JSObject();
+            fileObj.put("name", record.name());
+            fileObj.put("path", record.path);
+            fileObj.put("uri", documentUri(treeUri, record));
+            fileObj.put("type", record.mimeType);
+            fileObj.put("size", record.size);
+            array.put(fileObj);
+        }
+        return array;
+    }
+
+    private MediaClassifier classifierFrom(PluginCall call) {
+        return new MediaClassifier(
+            stringList(call.getArray("audioExtensions")),
+            stringList(call.getArray("audioMimeTypes")),
+            stringList(call.getArray("imageExtensions"))
+        );
+    }
+
+    private static List<String> stringList(JSONArray array) {
+        if (array == null) return null;
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            values.add(array.optString(i, null));
+        }
+        return values;
+    }
+
+    private static JSObject toFileObject(DocumentTreeScanner.Entry entry) {
+        JSObject fileObj = new JSObject();
+        fileObj.put("name", entry.name);
+        fileObj.put("path", entry.path);
+        fileObj.put("uri", entry.uri.toString());
+        fileObj.put("type", entry.mimeType);
+        fileObj.put("size", entry.size);
+        return fileObj;
+    }
+
+    private static void putClassified(JSObject ret, List<DocumentTreeScanner.Entry> entries,
+                                      MediaClassifier classifier) {
+        JSArray tracks = new JSArray();
+        int images = 0;
+
+        for (DocumentTreeScanner.Entry entry : entries) {
+            if (entry.isDirectory()) continue;
+
+            if (classifier.isAudio(entry.name, entry.mimeType)) {
+                tracks.put(toFileObject(entry));
+            } else if (classifier.isImage(entry.name)) {
+                images++;
+            }
+        }
+
+        DocumentTreeScanner.Entry cover = findCover(entries, classifier);
+        ret.put("tracks", tracks);
+        ret.put("cover", cover != null ? toFileObject(cover) : null);
+        ret.put("coverCandidates", images);
+    }
+
+    private static DocumentTreeScanner.Entry findCover(List<DocumentTreeScanner.Entry> entries,
+                                                       MediaClassifier classifier) {
+        DocumentTreeScanner.Entry cover = null;
+        for (DocumentTreeScanner.Entry entry : entries) {
+            if (entry.isDirectory() || classifier.isAudio(entry.name, entry.mimeType)) continue;
+
+            if (classifier.isImage(entry.name)
+                    && (cover == null || classifier.isBetterCover(entry.path, entry.size, cover.path, cover.size))) {
+                cover = entry;
+            }
+        }
+        return cover;
+    }
+
+    /**
+     * Copies a content URI into the files directory. When an identical file
+     * already exists it is returned instead, so the result's fileName and path
+     * may differ from the requested fileName.
+     */
     @PluginMethod
     public void copyContentFile(PluginCall call) {
         String sourceUri = call.getString("uri");
@@ -123,29 +361,16 @@ public class FolderPickerPlugin extends Plugin {
             return;
         }
 
-        executor.execute(() -> {
+        copyExecutor.execute(() -> {
             try {
-                Uri uri = Uri.parse(sourceUri);
-                InputStream is = getContext().getContentResolver().openInputStream(uri);
-                
-                File destFile = new File(getContext().getFilesDir(), destName);
-                if (destFile.exists()) destFile.delete();
-                
-                OutputStream os = new FileOutputStream(destFile);
-                
-                byte[] buffer = new byte[8192];
-                int length;
-                while ((length = is.read(buffer)) > 0) {
-                    os.write(buffer, 0, length);
-                }
-                
-                os.flush();
-                os.close();
-                is.close();
-                
+                ContentFileCopier.Result result = copyFrom(Uri.parse(sourceUri), destName);
+
+                File destFile = result.file;
                 JSObject ret = new JSObject();
+                ret.put("fileName", destFile.getName());
                 ret.put("path", destFile.getAbsolutePath());
                 ret.put("uri", "file://" + destFile.getAbsolutePath()); 
+                ret.put("deduplicated", result.deduplicated);
                 call.resolve(ret);
                 
             } catch (Exception e) {
@@ -154,6 +379,39 @@ public class FolderPickerPlugin extends Plugin {
         });
     }
 
+    /**
+     * Transfers from a FileChannel when the provider returns a regular file of
+     * known size. Pipe-backed descriptors fail FileChannel.transferFrom with
+     * ESPIPE and some providers only serve streams, so those are read through
+     * a stream channel instead.
+     */
+    private ContentFileCopier.Result copyFrom(Uri uri, String destName) throws IOException {
+        ContentResolver resolver = getContext().getContentResolver();
+        ParcelFileDescriptor pfd;
+        try {
+            pfd = resolver.openFileDescriptor(uri, "r");
+        } catch (FileNotFoundException | UnsupportedOperationException e) {
+            pfd = null;
+        }
+
+        if (pfd != null) {
+            try (ParcelFileDescriptor descriptor = pfd) {
+                long size = descriptor.getStatSize();
+                if (size >= 0) {
+                    try (FileChannel source = new FileInputStream(descriptor.getFileDescriptor()).getChannel()) {
+                        return fileCopier.copy(source, size, destName);
+                    }
+                }
+            }
+        }
+
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new IOException("Cannot open " + uri);
+        try (ReadableByteChannel source = Channels.newChannel(in)) {
+            return fileCopier.copy(source, -1, destName);
+        }
+    }
+
     @ActivityCallback
     private void pickFolderResult(PluginCall call, ActivityResult result) {
         if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
@@ -185,9 +443,220 @@ public class FolderPickerPlugin extends Plugin {
         }
     }
     
+    /**
+     * Observes one watched tree. The tree's document URI is observed with its
+     * descendants, which covers providers that notify on the tree. Providers
+     * such as ExternalStorageProvider only report changes to a directory while
+     * a children cursor for it is open, on that cursor's notification URI, so
+     * the watch also keeps one cursor open per directory, up to
+     * MAX_WATCHED_DIRECTORIES, and reopens them after every rescan to follow
+     * new folders. Each of those costs a cursor window here and a file
+     * observer in the provider for as long as the watch lives.
+     * Change notifications arrive per document, often hundreds during a sync,
+     * so they push back a single delayed rescan, at most WATCH_MAX_WAIT_MS
+     * after the first one.
+     */
+    private class FolderWatch extends ContentObserver {
+        private final String treeUri;
+        private final MediaClassifier classifier;
+        private final Runnable rescanRunnable = this::rescanNow;
+        private boolean rescanQueued = false;
+        private boolean dirtyWhileQueued = false;
+        private long firstChangeAt = -1;
+        private boolean recursive = false;
+        private int maxDepth = DEFAULT_MAX_DEPTH;
+        private List<Cursor> cursors = Collections.emptyList();
+        private boolean stopped = false;
+
+        FolderWatch(String treeUri, MediaClassifier classifier) {
+            super(mainHandler);
+            this.treeUri = treeUri;
+            this.classifier = classifier;
+        }
+
+        /** Runs on the executor, like every later rearm. */
+        void start() {
+            FolderSnapshotStore.Snapshot snapshot = snapshotStore.load(treeUri);
+            if (snapshot != null) {
+                recursive = snapshot.recursive;
+                maxDepth = snapshot.maxDepth;
+            }
+            rearm();
+        }
+
+        void stop() {
+            mainHandler.removeCallbacks(rescanRunnable);
+            List<Cursor> closing;
+            synchronized (this) {
+                stopped = true;
+                getContext().getContentResolver().unregisterContentObserver(this);
+                closing = cursors;
+                cursors = Collections.emptyList();
+            }
+            closeAll(closing);
+        }
+
+        /** Swaps the open directory cursors for a fresh set and observes their notification URIs. */
+        private void rearm() {
+            List<Cursor> opened = openDirectoryCursors();
+            List<Cursor> closing;
+            synchronized (this) {
+                if (stopped) {
+                    closing = opened;
+                } else {
+                    ContentResolver resolver = getContext().getContentResolver();
+                    resolver.unregisterContentObserver(this);
+                    Uri uri = Uri.parse(treeUri);
+                    resolver.registerContentObserver(DocumentsContract.buildDocumentUriUsingTree(
+                        uri, DocumentsContract.getTreeDocumentId(uri)), true, this);
+                    for (Cursor cursor : opened) {
+                        Uri notificationUri = cursor.getNotificationUri();
+                        if (notificationUri != null) {
+                            resolver.registerContentObserver(notificationUri, false, this);
+                        }
+                    }
+                    closing = cursors;
+                    cursors = opened;
+                }
+            }
+            closeAll(closing);
+        }
+
+        /** Opens a children cursor per directory, breadth first, down to the snapshot's depth. */
+        private List<Cursor> openDirectoryCursors() {
+            ContentResolver resolver = getContext().getContentResolver();
+            Uri uri = Uri.parse(treeUri);
+            List<Cursor> opened = new ArrayList<>();
+            List<String> level = Collections.singletonList(DocumentsContract.getTreeDocumentId(uri));
+
+            for (int depth = 0; !level.isEmpty(); depth++) {
+                List<String> next = new ArrayList<>();
+                for (String documentId : level) {
+                    if (opened.size() >= MAX_WATCHED_DIRECTORIES) {
+                        Log.w(TAG, "Watching only the first " + MAX_WATCHED_DIRECTORIES + " folders of " + treeUri);
+                        return opened;
+                    }
+
+                    Cursor cursor = resolver.query(DocumentsContract.buildChildDocumentsUriUsingTree(
+                        uri, documentId), WATCH_PROJECTION, null, null, null);
+                    if (cursor == null) continue;
+                    opened.add(cursor);
+
+                    if (!recursive || depth >= maxDepth) continue;
+                    while (cursor.moveToNext()) {
+                        if (DocumentsContract.Document.MIME_TYPE_DIR.equals(cursor.getString(1))) {
+                            next.add(cursor.getString(0));
+                        }
+                    }
+                }
+                level = next;
+            }
+            return opened;
+        }
+
+        private void closeAll(List<Cursor> closing) {
+            for (Cursor cursor : closing) {
+                try {
+                    cursor.close();
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to close watch cursor: " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (rescanQueued) {
+                dirtyWhileQueued = true;
+                return;
+            }
+            long now = SystemClock.uptimeMillis();
+            if (firstChangeAt < 0) firstChangeAt = now;
+            long delay = Math.min(WATCH_DEBOUNCE_MS, firstChangeAt + WATCH_MAX_WAIT_MS - now);
+            mainHandler.removeCallbacks(rescanRunnable);
+            mainHandler.postDelayed(rescanRunnable, Math.max(0, delay));
+        }
+
+        private void rescanNow() {
+            firstChangeAt = -1;
+            if (watches.get(treeUri) != this) return;
+            rescanQueued = true;
+
+            executor.execute(() -> {
+                try {
+                    JSObject delta = rescan(treeUri, null, null, null, classifier);
+                    if (!delta.getBoolean("empty", false)) {
+                        notifyListeners("folderChanged", delta);
+                    }
+                } catch (Exception e) {
+                    Log.w(TAG, "Watched rescan failed: " + e.getMessage());
+                }
+
+                try {
+                    rearm();
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to rearm folder watch: " + e.getMessage());
+                }
+
+                mainHandler.post(() -> {
+                    rescanQueued = false;
+                    if (dirtyWhileQueued) {
+                        dirtyWhileQueued = false;
+                        onChange(false, null);
+                    }
+                });
+            });
+        }
+    }
+
+    private class ScanProgressReporter {
+        private final String folderName;
+        private int lastReportedPercent = -1;
+
+        ScanProgressReporter(String folderName) {
+            this.folderName = folderName;
+        }
+
+        void report(int current, int total) {
+            int percent = total > 0 ? (int) ((long) current * 100 / total) : 0;
+            if (current == 0 || percent >= lastReportedPercent + 5 || current % 10 == 0 || current == total) {
+                lastReportedPercent = percent;
+
+                JSObject progressData = new JSObject();
+                progressData.put("folderName", folderName);
+                progressData.put("total", total);
+                progressData.put("current", current);
+                progressData.put("percent", percent);
+                notifyListeners("scanProgress", progressData);
+            }
+        }
+
+        synchronized void reportTree(int scannedDirectories, int knownDirectories, int files) {
+            int percent = (int) ((long) scannedDirectories * 100 / Math.max(1, knownDirectories));
+            percent = Math.max(percent, Math.max(lastReportedPercent, 0));
+            if (percent >= lastReportedPercent + 5 || scannedDirectories == knownDirectories) {
+                lastReportedPercent = percent;
+
+                JSObject progressData = new JSObject();
+                progressData.put("folderName", folderName);
+                progressData.put("total", knownDirectories);
+                progressData.put("current", scannedDirectories);
+                progressData.put("files", files);
+                progressData.put("percent", percent);
+                notifyListeners("scanProgress", progressData);
+            }
+        }
+    }
+
     @Override
     protected void handleOnDestroy() {
         super.handleOnDestroy();
+        for (FolderWatch watch : watches.values()) {
+            watch.stop();
+        }
+        watches.clear();
         executor.shutdown();
+        copyExecutor.shutdown();
+        scanPool.shutdownNow();
     }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package io.github.toraburumeka.sofy;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshots of scanned folder trees, one file per tree URI,
+ * used to diff a rescan against the previous listing.
+ */
+public class FolderSnapshotStore {
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+
+    public static class Record {
+        public final String documentId;
+        public final String path;
+        public final String mimeType;
+        public final long size;
+        public final long lastModified;
+
+        public Record(String documentId, String path, String mimeType, long size, long lastModified) {
+            this.documentId = documentId;
+            this.path = path;
+            this.mimeType = mimeType;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String name() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        boolean sameContent(Record other) {
+            return size == other.size && lastModified == other.lastModified;
+        }
+    }
+
+    public static class Snapshot {
+        public final boolean recursive;
+        public final int maxDepth;
+        public final int maxFiles;
+        public final Map<String, Record> records = new LinkedHashMap<>();
+
+        public Snapshot(boolean recursive, int maxDepth, int maxFiles) {
+            this.recursive = recursive;
+            this.maxDepth = maxDepth;
+            this.maxFiles = maxFiles;
+        }
+
+        public void add(Record record) {
+            records.put(record.documentId, record);
+        }
+    }
+
+    public static class Diff {
+        public final List<Record> added = new ArrayList<>();
+        public final List<Record> removed = new ArrayList<>();
+        public final List<Record> changed = new ArrayList<>();
+        public int unchanged;
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+        }
+    }
+
+    private final File dir;
+
+    public FolderSnapshotStore(File filesDir) {
+        this.dir = new File(filesDir, "folder_snapshots");
+    }
+
+    public static Diff diff(Snapshot previous, Snapshot current) {
+        Diff diff = new Diff();
+        for (Record record : current.records.values()) {
+            Record old = previous != null ? previous.records.get(record.documentId) : null;
+            if (old == null) {
+                diff.added.add(record);
+            } else if (!old.sameContent(record)) {
+                diff.changed.add(record);
+            } else {
+                diff.unchanged++;
+            }
+        }
+        if (previous != null) {
+            for (Record old : previous.records.values()) {
+                if (!current.records.containsKey(old.documentId)) {
+                    diff.removed.add(old);
+                }
+            }
+        }
+        return diff;
+    }
+
+    public synchronized Snapshot load(String treeUri) {
+        File file = fileFor(treeUri);
+        if (!file.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+            Snapshot snapshot = new Snapshot(in.readBoolean(), in.readInt(), in.readInt());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                snapshot.add(new Record(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(), in.readLong()));
+            }
+            return snapshot;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public synchronized void save(String treeUri, Snapshot snapshot) throws IOException {
+        AtomicFiles.write(fileFor(treeUri), out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(snapshot.recursive);
+            out.writeInt(snapshot.maxDepth);
+            out.writeInt(snapshot.maxFiles);
+            out.writeInt(snapshot.records.size());
+            for (Record record : snapshot.records.values()) {
+                out.writeUTF(record.documentId);
+                out.writeUTF(record.path);
+                out.writeUTF(record.mimeType != null ? record.mimeType : "");
+                out.writeLong(record.size);
+                out.writeLong(record.lastModified);
+            }
+        });
+    }
+
+    public synchronized void delete(String treeUri) {
+        fileFor(treeUri).delete();
+    }
+
+    private File fileFor(String treeUri) {
+        return new File(dir, Hashes.sha1Hex(treeUri) + ".bin");
+    }
+}
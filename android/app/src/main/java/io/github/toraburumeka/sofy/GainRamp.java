@@ -0,0 +1,223 @@
+package io.github.toraburumeka.sofy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gain applied per frame to interleaved PCM, moving from the current gain to
+ * a target over a number of frames. Ramps are started from any thread and
+ * advanced by the audio thread as samples pass through. When the sink reports
+ * input timestamps and its playout position, a ramp can also tell when its
+ * last frame has actually been played rather than just processed.
+ */
+public class GainRamp {
+    public enum Curve { LINEAR, EQUAL_POWER }
+
+    private int sampleRate;
+    private int channelCount;
+
+    private float gain = 1f;
+    private float from = 1f;
+    private float to = 1f;
+    private long totalFrames;
+    private long doneFrames;
+    private long pendingDurationMs = -1;
+    private Curve curve = Curve.LINEAR;
+    private Runnable onFinished;
+    private Runnable onPlayedOut;
+    private long inputTimeUs = -1;
+    private long playedOutAtUs = -1;
+
+    /**
+     * Sets the output format and starts a ramp that was waiting for it. The
+     * sink holds nothing after a flush, so a finished ramp still waiting to
+     * play out counts as played.
+     */
+    public void configure(int sampleRate, int channelCount) {
+        Runnable playedOut = null;
+        synchronized (this) {
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            inputTimeUs = -1;
+            if (pendingDurationMs >= 0 && sampleRate > 0) {
+                totalFrames = Math.max(1, pendingDurationMs * sampleRate / 1000);
+                doneFrames = 0;
+                pendingDurationMs = -1;
+            }
+            if (playedOutAtUs >= 0) {
+                playedOut = onPlayedOut;
+                onPlayedOut = null;
+                playedOutAtUs = -1;
+            }
+        }
+        if (playedOut != null) playedOut.run();
+    }
+
+    /** Records the presentation time of the input buffer about to be processed. */
+    public synchronized void markInput(long presentationTimeUs) {
+        inputTimeUs = presentationTimeUs;
+    }
+
+    /** Runs the played-out callback once the sink's playout position passes the ramp's last frame. */
+    public void onPlayout(long positionUs) {
+        Runnable playedOut;
+        synchronized (this) {
+            if (onPlayedOut == null || playedOutAtUs < 0 || positionUs < playedOutAtUs) return;
+            playedOut = onPlayedOut;
+            onPlayedOut = null;
+            playedOutAtUs = -1;
+        }
+        playedOut.run();
+    }
+
+    public synchronized float gain() {
+        return gain;
+    }
+
+    public synchronized boolean isRamping() {
+        return doneFrames < totalFrames || pendingDurationMs >= 0;
+    }
+
+    /** Jumps to the given gain, dropping any ramp in progress without notifying it. */
+    public synchronized void setGain(float value) {
+        gain = clamp(value);
+        totalFrames = 0;
+        doneFrames = 0;
+        pendingDurationMs = -1;
+        onFinished = null;
+        onPlayedOut = null;
+        playedOutAtUs = -1;
+    }
+
+    /**
+     * Starts a ramp from the current gain. onFinished runs on the audio thread
+     * once the last frame of the ramp has been processed, or right away when
+     * the ramp is empty. Before the output format is known the ramp is held at
+     * the current gain and starts on the next {@link #configure}.
+     */
+    public void rampTo(float target, long durationMs, Curve curve, Runnable onFinished) {
+        rampTo(target, durationMs, curve, onFinished, null);
+    }
+
+    /**
+     * Like {@link #rampTo(float, long, Curve, Runnable)}, and onPlayedOut runs
+     * on the audio thread once the sink has played the ramp's last frame. It
+     * runs when the ramp is processed if the sink does not report input
+     * timestamps.
+     */
+    public void rampTo(float target, long durationMs, Curve curve, Runnable onFinished, Runnable onPlayedOut) {
+        boolean immediate;
+        synchronized (this) {
+            long duration = Math.max(0, durationMs);
+            from = gain;
+            to = clamp(target);
+            this.curve = curve;
+            doneFrames = 0;
+            if (sampleRate > 0 || duration == 0) {
+                totalFrames = duration * sampleRate / 1000;
+                pendingDurationMs = -1;
+            } else {
+                totalFrames = 0;
+                pendingDurationMs = duration;
+            }
+            immediate = !isRamping();
+            playedOutAtUs = -1;
+            if (immediate) {
+                gain = to;
+                this.onFinished = null;
+                this.onPlayedOut = null;
+            } else {
+                this.onFinished = onFinished;
+                this.onPlayedOut = onPlayedOut;
+            }
+        }
+        if (immediate && onFinished != null) onFinished.run();
+        if (immediate && onPlayedOut != null) onPlayedOut.run();
+    }
+
+    /** Copies 16-bit samples from input to output with the gain applied. */
+    public void applyPcm16(ByteBuffer input, ByteBuffer output) {
+        Runnable finished;
+        Runnable playedOut;
+        synchronized (this) {
+            int channels = Math.max(1, channelCount);
+            if (!isRamping() && gain == 1f) {
+                output.put(input);
+                return;
+            }
+            for (int frame = 1; input.remaining() >= 2 * channels; frame++) {
+                float g = nextFrameGain(frame);
+                for (int c = 0; c < channels; c++) {
+                    int sample = Math.round(input.getShort() * g);
+                    output.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample)));
+                }
+            }
+            finished = takeFinished();
+            playedOut = takePlayedOut();
+        }
+        if (finished != null) finished.run();
+        if (playedOut != null) playedOut.run();
+    }
+
+    /** Copies 32-bit float samples from input to output with the gain applied. */
+    public void applyFloat(ByteBuffer input, ByteBuffer output) {
+        Runnable finished;
+        Runnable playedOut;
+        synchronized (this) {
+            int channels = Math.max(1, channelCount);
+            if (!isRamping() && gain == 1f) {
+                output.put(input);
+                return;
+            }
+            for (int frame = 1; input.remaining() >= 4 * channels; frame++) {
+                float g = nextFrameGain(frame);
+                for (int c = 0; c < channels; c++) {
+                    output.putFloat(input.getFloat() * g);
+                }
+            }
+            finished = takeFinished();
+            playedOut = takePlayedOut();
+        }
+        if (finished != null) finished.run();
+        if (playedOut != null) playedOut.run();
+    }
+
+    /** @param frame the 1-based frame index within the current input buffer */
+    private float nextFrameGain(int frame) {
+        if (doneFrames >= totalFrames) return gain;
+
+        doneFrames++;
+        if (doneFrames == totalFrames && onPlayedOut != null && inputTimeUs >= 0 && sampleRate > 0) {
+            playedOutAtUs = inputTimeUs + frame * 1_000_000L / sampleRate;
+        }
+        float progress = (float) doneFrames / totalFrames;
+        gain = doneFrames == totalFrames ? to : from + (to - from) * weight(progress);
+        return gain;
+    }
+
+    private float weight(float progress) {
+        if (curve == Curve.LINEAR) return progress;
+
+        // Equal power: sine-shaped rise, cosine-shaped fall.
+        double angle = progress * Math.PI / 2;
+        return (float) (to >= from ? Math.sin(angle) : 1 - Math.cos(angle));
+    }
+
+    private Runnable takeFinished() {
+        if (onFinished == null || isRamping()) return null;
+        Runnable finished = onFinished;
+        onFinished = null;
+        return finished;
+    }
+
+    /** Without input timestamps there is no playout to wait for, so the callback runs once processed. */
+    private Runnable takePlayedOut() {
+        if (onPlayedOut == null || isRamping() || playedOutAtUs >= 0) return null;
+        Runnable playedOut = onPlayedOut;
+        onPlayedOut = null;
+        return playedOut;
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0f, Math.min(1f, value));
+    }
+}
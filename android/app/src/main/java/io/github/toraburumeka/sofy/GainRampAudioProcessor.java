@@ -0,0 +1,45 @@
+package io.github.toraburumeka.sofy;
+
+import androidx.media3.common.C;
+import androidx.media3.common.audio.BaseAudioProcessor;
+import androidx.media3.common.util.UnstableApi;
+
+import java.nio.ByteBuffer;
+
+/** Runs decoded PCM through a {@link GainRamp} inside ExoPlayer's audio sink. */
+@UnstableApi
+public class GainRampAudioProcessor extends BaseAudioProcessor {
+    private final GainRamp ramp;
+
+    public GainRampAudioProcessor(GainRamp ramp) {
+        this.ramp = ramp;
+    }
+
+    @Override
+    protected AudioFormat onConfigure(AudioFormat inputAudioFormat) throws UnhandledAudioFormatException {
+        if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+                && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
+            throw new UnhandledAudioFormatException(inputAudioFormat);
+        }
+        return inputAudioFormat;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+        int remaining = inputBuffer.remaining();
+        if (remaining == 0) return;
+
+        ByteBuffer output = replaceOutputBuffer(remaining);
+        if (inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT) {
+            ramp.applyFloat(inputBuffer, output);
+        } else {
+            ramp.applyPcm16(inputBuffer, output);
+        }
+        output.flip();
+    }
+
+    @Override
+    protected void onFlush() {
+        ramp.configure(inputAudioFormat.sampleRate, inputAudioFormat.channelCount);
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.toraburumeka.sofy;
+
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.audio.AudioSink;
+import androidx.media3.exoplayer.audio.ForwardingAudioSink;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reports input timestamps and the playout position of the wrapped sink to
+ * a {@link GainRamp}, so a fade can wait for the audio the sink still holds
+ * instead of guessing its buffer size. Both calls come from the player's
+ * internal playback thread.
+ */
+@UnstableApi
+public class GainRampAudioSink extends ForwardingAudioSink {
+    private final GainRamp ramp;
+
+    public GainRampAudioSink(AudioSink sink, GainRamp ramp) {
+        super(sink);
+        this.ramp = ramp;
+    }
+
+    @Override
+    public boolean handleBuffer(ByteBuffer buffer, long presentationTimeUs, int encodedAccessUnitCount)
+            throws InitializationException, WriteException {
+        ramp.markInput(presentationTimeUs);
+        return super.handleBuffer(buffer, presentationTimeUs, encodedAccessUnitCount);
+    }
+
+    @Override
+    public long getCurrentPositionUs(boolean sourceEnded) {
+        long positionUs = super.getCurrentPositionUs(sourceEnded);
+        if (positionUs != CURRENT_POSITION_NOT_SET) {
+            ramp.onPlayout(positionUs);
+        }
+        return positionUs;
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.toraburumeka.sofy;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/** Stable hex digests for turning URIs and ids into file names. */
+final class Hashes {
+    private Hashes() {}
+
+    static String sha1Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class MainActivity extends BridgeActivity {
         registerPlugin(FolderPickerPlugin.class);
         registerPlugin(NativeAudioPlugin.class);
         registerPlugin(DurationCachePlugin.class);
+        registerPlugin(PlaylistLibraryPlugin.class);
         super.onCreate(savedInstanceState);
     }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package io.github.toraburumeka.sofy;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Sorts scanned folder entries into audio tracks and cover candidates by
+ * extension and MIME type, and ranks cover candidates.
+ */
+public class MediaClassifier {
+    public static final List<String> DEFAULT_AUDIO_EXTENSIONS =
+        Arrays.asList("mp3", "ogg", "m4a", "wav", "flac", "aac");
+    public static final List<String> DEFAULT_IMAGE_EXTENSIONS =
+        Arrays.asList("png", "jpg", "jpeg", "webp");
+
+    private static final String[] PREFERRED_COVER_NAMES = {"cover", "folder", "front"};
+    private static final String[] FALLBACK_COVER_NAMES = {"album", "art"};
+
+    private final Set<String> audioExtensions;
+    private final Collection<String> audioMimeTypes;
+    private final Set<String> imageExtensions;
+
+    public MediaClassifier(Collection<String> audioExtensions, Collection<String> audioMimeTypes,
+                           Collection<String> imageExtensions) {
+        this.audioExtensions = normalize(audioExtensions != null ? audioExtensions : DEFAULT_AUDIO_EXTENSIONS);
+        this.audioMimeTypes = audioMimeTypes != null ? normalize(audioMimeTypes) : new HashSet<>();
+        this.imageExtensions = normalize(imageExtensions != null ? imageExtensions : DEFAULT_IMAGE_EXTENSIONS);
+    }
+
+    public boolean isAudio(String name, String mimeType) {
+        if (audioExtensions.contains(extension(name))) return true;
+        if (mimeType == null) return false;
+
+        String mime = mimeType.toLowerCase(Locale.ROOT);
+        for (String prefix : audioMimeTypes) {
+            if (mime.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    public boolean isImage(String name) {
+        return imageExtensions.contains(extension(name));
+    }
+
+    /** @return true if candidate makes a better playlist cover than the current best. */
+    public boolean isBetterCover(String candidatePath, long candidateSize, String bestPath, long bestSize) {
+        if (bestPath == null) return true;
+
+        int rankDiff = coverRank(candidatePath) - coverRank(bestPath);
+        if (rankDiff != 0) return rankDiff > 0;
+
+        int depthDiff = depth(candidatePath) - depth(bestPath);
+        if (depthDiff != 0) return depthDiff < 0;
+
+        return candidateSize > bestSize;
+    }
+
+    static int coverRank(String path) {
+        String base = baseName(path);
+        for (String name : PREFERRED_COVER_NAMES) {
+            if (base.equals(name)) return 3;
+        }
+        for (String name : PREFERRED_COVER_NAMES) {
+            if (base.contains(name)) return 2;
+        }
+        for (String name : FALLBACK_COVER_NAMES) {
+            if (base.contains(name)) return 1;
+        }
+        return 0;
+    }
+
+    static int depth(String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/') depth++;
+        }
+        return depth;
+    }
+
+    static String extension(String name) {
+        if (name == null) return "";
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static String baseName(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return (dot >= 0 ? name.substring(0, dot) : name).toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> normalize(Collection<String> values) {
+        Set<String> result = new HashSet<>();
+        for (String value : values) {
+            if (value == null) continue;
+            String v = value.toLowerCase(Locale.ROOT);
+            result.add(v.startsWith(".") ? v.substring(1) : v);
+        }
+        return result;
+    }
+}
@@ -1,6 +1,9 @@
 package io.github.toraburumeka.sofy;
 
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
 import android.util.Log;
 
 import com.getcapacitor.JSObject;
@@ -11,6 +14,7 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -19,66 +23,192 @@ import org.json.JSONException;
 public class NativeAudioPlugin extends Plugin {
     private static final String TAG = "NativeAudioPlugin";
 
+    private volatile NativeAudioService service;
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = ((NativeAudioService.LocalBinder) binder).getService();
+            Log.d(TAG, "Bound to NativeAudioService");
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            service = null;
+        }
+    };
+
     @Override
     public void load() {
         super.load();
         NativeAudioService.setPlugin(this);
+        // Flag 0: the binding never creates or keeps the service alive, it only
+        // connects whenever the service is running.
+        getContext().bindService(new Intent(getContext(), NativeAudioService.class), connection, 0);
         Log.d(TAG, "NativeAudioPlugin loaded and registered in Service");
     }
 
+    @Override
+    protected void handleOnDestroy() {
+        getContext().unbindService(connection);
+        service = null;
+        super.handleOnDestroy();
+    }
+
+    /**
+     * Hands the command straight to the running service; startService is only
+     * needed when the service is not running yet.
+     */
+    private void sendCommand(Intent intent) {
+        intent.putExtra(NativeAudioService.EXTRA_ISSUED_AT, System.currentTimeMillis());
+        NativeAudioService bound = service;
+        if (bound != null && bound.isRunning()) {
+            bound.dispatch(intent);
+        } else {
+            getContext().startService(intent);
+        }
+    }
+
+    @Override
+    protected void handleOnResume() {
+        super.handleOnResume();
+        NativeAudioService.setUiVisible(true);
+    }
+
+    @Override
+    protected void handleOnPause() {
+        super.handleOnPause();
+        NativeAudioService.setUiVisible(false);
+    }
+
+    boolean hasProgressListeners() {
+        return hasListeners("progressChanged");
+    }
+
+    /**
+     * Starts a playlist registered in {@link PlaylistRegistry}. When tracks are
+     * passed they are registered first; without them the playlist must already
+     * be registered under the same revision, otherwise loaded is false and the
+     * caller has to send the tracks. Track URIs are interned through the
+     * playlist library so the registry and the service only hold int ids.
+     * missingDurations tells the caller whether durations still need sending.
+     */
     @PluginMethod
     public void loadPlaylist(PluginCall call) {
         try {
-            List<String> tracks = new ArrayList<>();
+            String playlistId = call.getString("playlistId", "");
+            String revision = call.getString("revision", "");
+            String title = call.getString("title", "Unknown Playlist");
+            String cover = call.getString("cover", "");
+            PlaylistRegistry registry = PlaylistRegistry.getInstance();
+
+            PlaylistRegistry.Playlist playlist;
             JSONArray tracksArray = call.getArray("tracks");
-            if (tracksArray != null) {
+            if (tracksArray != null && tracksArray.length() > 0) {
+                List<String> tracks = new ArrayList<>(tracksArray.length());
                 for (int i = 0; i < tracksArray.length(); i++) {
                     tracks.add(tracksArray.getString(i));
                 }
-            }
 
-            String title = call.getString("title", "Unknown Playlist");
-            String cover = call.getString("cover", "");
-            
-            long totalDuration = 0;
-            Long totalDurationObj = call.getLong("totalDuration");
-            if (totalDurationObj != null) {
-                totalDuration = totalDurationObj.longValue();
+                long[] durations = new long[tracks.size()];
+                JSONArray durationsArray = call.getArray("durations");
+                if (durationsArray != null) {
+                    for (int i = 0; i < durationsArray.length() && i < durations.length; i++) {
+                        Object val = durationsArray.get(i);
+                        if (val instanceof Number) {
+                            durations[i] = ((Number) val).longValue();
+                        }
+                    }
+                }
+                int[] trackIds = PlaylistLibrary.getInstance(getContext()).intern(tracks);
+                playlist = registry.register(playlistId, revision, trackIds, durations);
             } else {
-                Double totalDurationDbl = call.getDouble("totalDuration");
-                if (totalDurationDbl != null) {
-                    totalDuration = totalDurationDbl.longValue();
-                } else {
-                     Integer totalDurationInt = call.getInt("totalDuration");
-                     if (totalDurationInt != null) {
-                         totalDuration = totalDurationInt.longValue();
-                     }
+                playlist = registry.get(playlistId, revision);
+                if (playlist == null) {
+                    JSObject ret = new JSObject();
+                    ret.put("loaded", false);
+                    call.resolve(ret);
+                    return;
                 }
             }
 
-            long[] durations = new long[tracks.size()];
+            Intent intent = new Intent(getContext(), NativeAudioService.class);
+            intent.setAction(NativeAudioService.ACTION_LOAD_PLAYLIST);
+            intent.putExtra("playlistId", playlistId);
+            intent.putExtra("title", title);
+            intent.putExtra("cover", cover);
+            sendCommand(intent);
+
+            JSObject ret = new JSObject();
+            ret.put("loaded", true);
+            ret.put("missingDurations", playlist.missingDurations());
+            call.resolve(ret);
+        } catch (JSONException e) {
+            call.reject("Failed to parse playlist: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void setTrackGap(PluginCall call) {
+        Integer gapMs = call.getInt("gapMs");
+        if (gapMs == null || gapMs < 0) {
+            call.reject("Invalid gap");
+            return;
+        }
+
+        Intent intent = new Intent(getContext(), NativeAudioService.class);
+        intent.setAction(NativeAudioService.ACTION_SET_TRACK_GAP);
+        intent.putExtra("gapMs", gapMs.intValue());
+        sendCommand(intent);
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void setCrossfade(PluginCall call) {
+        Integer durationMs = call.getInt("durationMs");
+        if (durationMs == null || durationMs < 0) {
+            call.reject("Invalid crossfade duration");
+            return;
+        }
+
+        Intent intent = new Intent(getContext(), NativeAudioService.class);
+        intent.setAction(NativeAudioService.ACTION_SET_CROSSFADE);
+        intent.putExtra("crossfadeMs", durationMs.intValue());
+        sendCommand(intent);
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void updateDurations(PluginCall call) {
+        try {
             JSONArray durationsArray = call.getArray("durations");
-            if (durationsArray != null) {
-                for (int i = 0; i < durationsArray.length(); i++) {
-                    Object val = durationsArray.get(i);
-                    if (val instanceof Number) {
-                        durations[i] = ((Number) val).longValue();
-                    }
+            if (durationsArray == null) {
+                call.reject("No durations provided");
+                return;
+            }
+
+            long[] durations = new long[durationsArray.length()];
+            for (int i = 0; i < durationsArray.length(); i++) {
+                Object val = durationsArray.get(i);
+                if (val instanceof Number) {
+                    durations[i] = ((Number) val).longValue();
                 }
             }
 
+            String playlistId = call.getString("playlistId", "");
+            int offset = call.getInt("offset", 0);
+            PlaylistRegistry.getInstance().updateDurations(playlistId, offset, durations);
+
             Intent intent = new Intent(getContext(), NativeAudioService.class);
-            intent.setAction(NativeAudioService.ACTION_LOAD_PLAYLIST);
-            intent.putStringArrayListExtra("tracks", (ArrayList<String>) tracks);
-            intent.putExtra("title", title);
-            intent.putExtra("cover", cover);
+            intent.setAction(NativeAudioService.ACTION_UPDATE_DURATIONS);
+            intent.putExtra("playlistId", playlistId);
+            intent.putExtra("offset", offset);
             intent.putExtra("durations", durations);
-            intent.putExtra("totalDuration", totalDuration);
 
-            getContext().startService(intent);
+            sendCommand(intent);
             call.resolve();
         } catch (JSONException e) {
-            call.reject("Failed to parse playlist: " + e.getMessage());
+            call.reject("Failed to parse durations: " + e.getMessage());
         }
     }
 
@@ -86,7 +216,7 @@ public class NativeAudioPlugin extends Plugin {
     public void play(PluginCall call) {
         Intent intent = new Intent(getContext(), NativeAudioService.class);
         intent.setAction(NativeAudioService.ACTION_PLAY);
-        getContext().startService(intent);
+        sendCommand(intent);
         call.resolve();
     }
 
@@ -94,7 +224,7 @@ public class NativeAudioPlugin extends Plugin {
     public void pause(PluginCall call) {
         Intent intent = new Intent(getContext(), NativeAudioService.class);
         intent.setAction(NativeAudioService.ACTION_PAUSE);
-        getContext().startService(intent);
+        sendCommand(intent);
         call.resolve();
     }
 
@@ -102,7 +232,7 @@ public class NativeAudioPlugin extends Plugin {
     public void stop(PluginCall call) {
         Intent intent = new Intent(getContext(), NativeAudioService.class);
         intent.setAction(NativeAudioService.ACTION_STOP);
-        getContext().startService(intent);
+        sendCommand(intent);
         call.resolve();
     }
 
@@ -110,10 +240,60 @@ public class NativeAudioPlugin extends Plugin {
     public void next(PluginCall call) {
         Intent intent = new Intent(getContext(), NativeAudioService.class);
         intent.setAction(NativeAudioService.ACTION_NEXT);
-        getContext().startService(intent);
+        sendCommand(intent);
         call.resolve();
     }
 
+    @PluginMethod
+    public void seekToPlaylistPosition(PluginCall call) {
+        Double position = call.getDouble("position");
+        if (position == null || position < 0) {
+            call.reject("Invalid position");
+            return;
+        }
+
+        Intent intent = new Intent(getContext(), NativeAudioService.class);
+        intent.setAction(NativeAudioService.ACTION_SEEK_PLAYLIST);
+        intent.putExtra("positionMs", position.longValue());
+        sendCommand(intent);
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void previous(PluginCall call) {
+        Intent intent = new Intent(getContext(), NativeAudioService.class);
+        intent.setAction(NativeAudioService.ACTION_PREVIOUS);
+        sendCommand(intent);
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void getCommandLatency(PluginCall call) {
+        JSObject ret = new JSObject();
+        ret.put("commands", toJson(NativeAudioService.getCommandLatency()));
+        ret.put("audible", toJson(NativeAudioService.getAudibleLatency()));
+
+        if (call.getBoolean("reset", false)) {
+            NativeAudioService.resetCommandLatency();
+        }
+        call.resolve(ret);
+    }
+
+    private static JSObject toJson(Map<String, CommandLatencyTracker.Stats> latency) {
+        JSObject commands = new JSObject();
+        for (Map.Entry<String, CommandLatencyTracker.Stats> entry : latency.entrySet()) {
+            CommandLatencyTracker.Stats stats = entry.getValue();
+            JSObject item = new JSObject();
+            item.put("count", stats.count);
+            item.put("meanMs", stats.meanMs);
+            item.put("p95Ms", stats.p95Ms);
+            item.put("maxMs", stats.maxMs);
+            item.put("lastMs", stats.lastMs);
+            commands.put(entry.getKey(), item);
+        }
+        return commands;
+    }
+
     public void notifyPlayState(boolean isPlaying) {
         JSObject ret = new JSObject();
         ret.put("isPlaying", isPlaying);
@@ -127,9 +307,9 @@ public class NativeAudioPlugin extends Plugin {
         notifyListeners("progressChanged", ret);
     }
     
-    public void notifyMetadata(String base64) {
+    public void notifyMetadata(String coverPath) {
         JSObject ret = new JSObject();
-        ret.put("cover", base64); 
+        ret.put("coverPath", coverPath); 
         notifyListeners("metadataChanged", ret);
     }
 }
\ No newline at end of file
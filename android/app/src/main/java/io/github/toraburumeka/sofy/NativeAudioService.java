@@ -5,20 +5,23 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
-import android.util.Base64;
 import android.util.Log;
 import android.view.KeyEvent;
 
@@ -31,14 +34,32 @@ import androidx.media3.common.C;
 import androidx.media3.common.MediaItem;
 import androidx.media3.common.Player;
 import androidx.media3.common.util.UnstableApi;
+import androidx.media3.common.audio.AudioProcessor;
+import androidx.media3.exoplayer.DefaultRenderersFactory;
+import androidx.media3.exoplayer.DefaultLoadControl;
 import androidx.media3.exoplayer.ExoPlayer;
-
-import java.io.InputStream;
+import androidx.media3.exoplayer.LoadControl;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
+import androidx.media3.exoplayer.audio.AudioSink;
+import androidx.media3.exoplayer.audio.DefaultAudioSink;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class NativeAudioService extends Service {
     private static final String TAG = "NativeAudioService";
@@ -50,28 +71,104 @@ public class NativeAudioService extends Service {
     public static final String ACTION_PAUSE = "io.github.toraburumeka.sofy.PAUSE";
     public static final String ACTION_STOP = "io.github.toraburumeka.sofy.STOP";
     public static final String ACTION_NEXT = "io.github.toraburumeka.sofy.NEXT";
+    public static final String ACTION_PREVIOUS = "io.github.toraburumeka.sofy.PREVIOUS";
+    public static final String ACTION_SEEK_PLAYLIST = "io.github.toraburumeka.sofy.SEEK_PLAYLIST";
+    public static final String ACTION_UPDATE_DURATIONS = "io.github.toraburumeka.sofy.UPDATE_DURATIONS";
+    public static final String ACTION_SET_TRACK_GAP = "io.github.toraburumeka.sofy.SET_TRACK_GAP";
+    public static final String ACTION_SET_CROSSFADE = "io.github.toraburumeka.sofy.SET_CROSSFADE";
+    public static final String EXTRA_ISSUED_AT = "issuedAtMs";
+
+    private static final AudioAttributes AUDIO_ATTRIBUTES = new AudioAttributes.Builder()
+        .setUsage(C.USAGE_MEDIA)
+        .setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
+        .build();
 
     private ExoPlayer player;
     private MediaSessionCompat mediaSession;
     private final IBinder binder = new LocalBinder();
-    private Handler mainHandler;
+    private HandlerThread playbackThread;
+    private Handler playbackHandler;
+    private static final CommandLatencyTracker commandLatency = new CommandLatencyTracker();
+    private static final CommandLatencyTracker audibleLatency = new CommandLatencyTracker();
+    private String audibleCommand;
+    private long audibleIssuedAtMs;
+    private volatile boolean running;
     private Runnable progressRunnable;
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+    private static final long IDLE_PROGRESS_INTERVAL_MS = 5000;
+    private static volatile boolean uiVisible = true;
+    private static NativeAudioService activeService;
+    private boolean screenOn = true;
+    private BroadcastReceiver screenReceiver;
 
     private static final int FADE_DURATION_MS = 800;
-    private static final int FADE_STEPS = 20;
-    private float targetVolume = 1.0f;
+    private static final int FADE_OUT_DURATION_MS = 400;
+    // Covers frames still held by the sink's processors ahead of the gain ramp.
+    private static final int FADE_SETTLE_MS = 50;
+    // AudioTrack buffers up to 750 ms of PCM; the timeout must outlast it.
+    private static final int FADE_TIMEOUT_MS = 1500;
+    private GainRamp gainRamp = new GainRamp();
+    private int fadeGeneration;
+
+    private static final long SNAPSHOT_DEBOUNCE_MS = 500;
+    private static final long SNAPSHOT_INTERVAL_MS = 15000;
+    private static final long QUEUE_SAVE_DELAY_MS = 5000;
+    private Runnable snapshotRunnable;
+    private Runnable queueSaveRunnable;
+    private long snapshotDueAt;
+    private boolean resumeOnRestart;
     private Runnable fadeRunnable;
     private boolean isFadingOut = false;
+    private boolean silentTail = false;
 
-    private static final int TRACK_GAP_MS = 2000;
+    private static final int DEFAULT_TRACK_GAP_MS = 2000;
+    private int trackGapMs = DEFAULT_TRACK_GAP_MS;
     private Runnable nextTrackRunnable;
-
-    private List<String> playlist = new ArrayList<>();
-    private Set<Integer> playedIndices = new HashSet<>();
+    private int pendingSkips;
+    private int skipFadeGeneration;
+
+    private static final int MAX_CROSSFADE_MS = 12000;
+    private static final long CROSSFADE_PRELOAD_MS = 8000;
+    private static final int STANDBY_MIN_BUFFER_MS = 5000;
+    private static final int STANDBY_MAX_BUFFER_MS = 10000;
+    private int crossfadeMs = 0;
+    private ExoPlayer standbyPlayer;
+    private GainRamp standbyRamp = new GainRamp();
+    private int standbyTrackIndex = -1;
+    private Runnable preloadRunnable;
+    private Runnable crossfadeRunnable;
+    private Runnable releaseOutgoingRunnable;
+    private static final long RESTART_THRESHOLD_MS = 3000;
+
+    private static final int METADATA_REFRESH_DELAY_MS = 1000;
+    private Runnable metadataRefreshRunnable;
+
+    private String playlistId = "";
+    private String playlistRevision = "";
+    private int[] trackIds = new int[0];
+    private final Random random = new Random();
+    private ShuffleEngine shuffle = new ShuffleEngine(0, random);
+    private ShuffleEngine savedShuffle;
+    private int savedShuffleCycle;
+    private PlaylistTimeline timeline = new PlaylistTimeline(new int[0], new long[0]);
     private int currentTrackIndex = -1;
+    private int upcomingTrackIndex = -1;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
     private String playlistTitle = "VNL Player";
     private String coverUri = "";
     private Bitmap coverBitmap = null;
+    private Bitmap trackCoverBitmap = null;
+
+    private static final int ARTWORK_MAX_SIZE = 512;
+    private static final long ARTWORK_BUDGET_BYTES = ARTWORK_MAX_SIZE * ARTWORK_MAX_SIZE * 4;
+    private final ArtworkDecoder artworkDecoder = new ArtworkDecoder(ARTWORK_MAX_SIZE, ARTWORK_BUDGET_BYTES);
+
+    private static final int COVER_WORKERS = 2;
+    private final ExecutorService coverExecutor = Executors.newFixedThreadPool(COVER_WORKERS);
+    private final AtomicInteger coverGeneration = new AtomicInteger();
+    private final AtomicInteger playlistCoverGeneration = new AtomicInteger();
+    private Future<?> coverTask;
+    private Future<?> playlistCoverTask;
 
     private long[] trackDurations;
     private long totalPlaylistDuration = 0;
@@ -93,10 +190,15 @@ public class NativeAudioService extends Service {
         super.onCreate();
         Log.d(TAG, "Service onCreate");
 
-        mainHandler = new Handler(Looper.getMainLooper());
+        playbackThread = new HandlerThread("NativeAudioPlayback", Process.THREAD_PRIORITY_AUDIO);
+        playbackThread.start();
+        playbackHandler = new Handler(playbackThread.getLooper());
+        activeService = this;
+        running = true;
         createNotificationChannel();
         initMediaSession();
-        initPlayer();
+        playbackHandler.post(this::initPlayer);
+        registerScreenReceiver();
     }
 
     private void initMediaSession() {
@@ -121,6 +223,19 @@ public class NativeAudioService extends Service {
                 stop();
             }
 
+            @Override
+            public void onSkipToNext() {
+                Log.d(TAG, "MediaSession: onSkipToNext");
+                skipNext();
+            }
+
+            @Override
+            public void onSkipToPrevious() {
+                Log.d(TAG, "MediaSession: onSkipToPrevious");
+                cancelScheduledNextTrack();
+                playPrevious();
+            }
+
             @Override
             public boolean onMediaButtonEvent(Intent mediaButtonEvent) {
                 KeyEvent keyEvent = mediaButtonEvent.getParcelableExtra(Intent.EXTRA_KEY_EVENT);
@@ -147,13 +262,17 @@ public class NativeAudioService extends Service {
                             stop();
                             return true;
                         case KeyEvent.KEYCODE_MEDIA_NEXT:
+                            skipNext();
+                            return true;
                         case KeyEvent.KEYCODE_MEDIA_PREVIOUS:
+                            cancelScheduledNextTrack();
+                            playPrevious();
                             return true;
                     }
                 }
                 return super.onMediaButtonEvent(mediaButtonEvent);
             }
-        });
+        }, playbackHandler);
 
         mediaSession.setFlags(
             MediaSessionCompat.FLAG_HANDLES_MEDIA_BUTTONS |
@@ -164,32 +283,84 @@ public class NativeAudioService extends Service {
         Log.d(TAG, "MediaSession initialized");
     }
 
-    @OptIn(markerClass = UnstableApi.class)
     private void initPlayer() {
-        AudioAttributes audioAttributes = new AudioAttributes.Builder()
-            .setUsage(C.USAGE_MEDIA)
-            .setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
-            .build();
+        player = buildPlayer(gainRamp, true, null);
+        Log.d(TAG, "ExoPlayer initialized");
+    }
 
-        player = new ExoPlayer.Builder(this)
-            .setAudioAttributes(audioAttributes, true)
-            .setHandleAudioBecomingNoisy(true)
-            .build();
+    /**
+     * Builds a player whose audio runs through the given gain ramp. Only the
+     * active player holds audio focus; the crossfade standby player gets a
+     * smaller load control so preloading stays cheap.
+     */
+    @OptIn(markerClass = UnstableApi.class)
+    private ExoPlayer buildPlayer(GainRamp ramp, boolean handleAudioFocus, @Nullable LoadControl loadControl) {
+        DefaultRenderersFactory renderersFactory = new DefaultRenderersFactory(this) {
+            @Override
+            protected AudioSink buildAudioSink(Context context, boolean enableFloatOutput,
+                                               boolean enableAudioTrackPlaybackParams) {
+                return new GainRampAudioSink(new DefaultAudioSink.Builder(context)
+                    .setEnableFloatOutput(enableFloatOutput)
+                    .setEnableAudioTrackPlaybackParams(enableAudioTrackPlaybackParams)
+                    .setAudioProcessors(new AudioProcessor[] { new GainRampAudioProcessor(ramp) })
+                    .build(), ramp);
+            }
+        };
+
+        ExoPlayer.Builder builder = new ExoPlayer.Builder(this, renderersFactory)
+            .setLooper(playbackThread.getLooper())
+            .setAudioAttributes(AUDIO_ATTRIBUTES, handleAudioFocus)
+            .setHandleAudioBecomingNoisy(true);
+        if (loadControl != null) {
+            builder.setLoadControl(loadControl);
+        }
+        final ExoPlayer built = builder.build();
+        built.setPauseAtEndOfMediaItems(trackGapMs > 0);
+
+        built.addAnalyticsListener(new AnalyticsListener() {
+            @Override
+            public void onAudioPositionAdvancing(EventTime eventTime, long playoutStartSystemTimeMs) {
+                if (built != player || audibleCommand == null) return;
+                long latencyMs = Math.max(0, playoutStartSystemTimeMs - audibleIssuedAtMs);
+                audibleLatency.record(audibleCommand, latencyMs * 1_000_000L);
+                Log.d(TAG, audibleCommand + " audible after " + latencyMs + "ms");
+                audibleCommand = null;
+            }
+        });
 
-        player.addListener(new Player.Listener() {
+        built.addListener(new Player.Listener() {
             @Override
             public void onPlaybackStateChanged(int state) {
+                if (built != player) return;
                 if (state == Player.STATE_ENDED) {
                     scheduleNextTrack();
                 }
                 updatePlaybackState();
             }
 
+            @Override
+            public void onPlayWhenReadyChanged(boolean playWhenReady, int reason) {
+                if (built != player) return;
+                if (reason == Player.PLAY_WHEN_READY_CHANGE_REASON_END_OF_MEDIA_ITEM) {
+                    scheduleNextTrack();
+                }
+            }
+
+            @Override
+            public void onMediaItemTransition(MediaItem mediaItem, int reason) {
+                if (built != player) return;
+                if (mediaItem != null && reason != Player.MEDIA_ITEM_TRANSITION_REASON_PLAYLIST_CHANGED) {
+                    onQueuedTrackStarted(mediaItem);
+                }
+            }
+
             @Override
             public void onIsPlayingChanged(boolean isPlaying) {
+                if (built != player) return;
                 Log.d(TAG, "isPlaying: " + isPlaying);
                 updateNotification();
                 updatePlaybackState();
+                requestSnapshot(SNAPSHOT_DEBOUNCE_MS);
 
                 if (!isFadingOut) {
                     notifyPlayState(isPlaying);
@@ -197,18 +368,22 @@ public class NativeAudioService extends Service {
 
                 if (isPlaying) {
                     startProgressUpdates();
+                    scheduleCrossfade();
                 } else {
                     stopProgressUpdates();
+                    cancelCrossfadeTimers();
+                    if (shouldEmitProgress() && pluginInstance.hasProgressListeners()) {
+                        notifyProgress(getPlaylistPosition(), totalPlaylistDuration);
+                    }
                 }
             }
         });
-
-        Log.d(TAG, "ExoPlayer initialized");
+        return built;
     }
 
     private void scheduleNextTrack() {
         if (nextTrackRunnable != null) {
-            mainHandler.removeCallbacks(nextTrackRunnable);
+            playbackHandler.removeCallbacks(nextTrackRunnable);
         }
         
         nextTrackRunnable = new Runnable() {
@@ -218,12 +393,12 @@ public class NativeAudioService extends Service {
             }
         };
         
-        mainHandler.postDelayed(nextTrackRunnable, TRACK_GAP_MS);
+        playbackHandler.postDelayed(nextTrackRunnable, trackGapMs);
     }
 
     private void cancelScheduledNextTrack() {
         if (nextTrackRunnable != null) {
-            mainHandler.removeCallbacks(nextTrackRunnable);
+            playbackHandler.removeCallbacks(nextTrackRunnable);
             nextTrackRunnable = null;
         }
     }
@@ -233,6 +408,14 @@ public class NativeAudioService extends Service {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent == null) {
+            // Restarted by the system after being killed: carry on from the restored snapshot.
+            playbackHandler.post(this::restoreSnapshot);
+            playbackHandler.post(() -> {
+                if (resumeOnRestart) {
+                    resumeOnRestart = false;
+                    play();
+                }
+            });
             return START_STICKY;
         }
 
@@ -240,20 +423,75 @@ public class NativeAudioService extends Service {
         Log.d(TAG, "onStartCommand: " + action);
 
         if (Intent.ACTION_MEDIA_BUTTON.equals(action)) {
+            // A media button can start the service after it was killed; give it the last queue to act on.
+            playbackHandler.post(this::restoreSnapshot);
             MediaButtonReceiver.handleIntent(mediaSession, intent);
             return START_STICKY;
         }
 
+        dispatch(intent);
+        return START_STICKY;
+    }
+
+    /**
+     * Queues a command on the playback thread. The plugin calls this directly
+     * once bound, skipping the ActivityManager round trip of startService.
+     */
+    void dispatch(Intent intent) {
+        final String action = intent.getAction();
+        if (action == null) return;
+
+        final String command = action.substring(action.lastIndexOf('.') + 1);
+        final long enqueuedAt = System.nanoTime();
+        final long issuedAtMs = intent.getLongExtra(EXTRA_ISSUED_AT, System.currentTimeMillis());
+        playbackHandler.post(() -> {
+            commandLatency.record(command, System.nanoTime() - enqueuedAt);
+            trackAudibleLatency(action, command, issuedAtMs);
+            handleCommand(action, intent);
+        });
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Remembers when a command that should lead to sound was issued, until the
+     * active player reports that audio output started. In a burst the first
+     * command's time is kept, so coalesced skips are measured from the first tap.
+     */
+    private void trackAudibleLatency(String action, String command, long issuedAtMs) {
+        if (ACTION_PAUSE.equals(action) || ACTION_STOP.equals(action)) {
+            audibleCommand = null;
+        } else if (ACTION_PLAY.equals(action) || ACTION_NEXT.equals(action) || ACTION_PREVIOUS.equals(action)
+                || ACTION_SEEK_PLAYLIST.equals(action) || ACTION_LOAD_PLAYLIST.equals(action)) {
+            if (audibleCommand == null) {
+                audibleCommand = command;
+                audibleIssuedAtMs = issuedAtMs;
+            }
+        }
+    }
+
+    private void handleCommand(String action, Intent intent) {
         if (ACTION_LOAD_PLAYLIST.equals(action)) {
             cancelScheduledNextTrack(); 
-            ArrayList<String> tracks = intent.getStringArrayListExtra("tracks");
-            String title = intent.getStringExtra("title");
-            String cover = intent.getStringExtra("cover");
-            long[] durations = intent.getLongArrayExtra("durations");
-            long totalDuration = intent.getLongExtra("totalDuration", 0L);
-
-            if (tracks != null && !tracks.isEmpty()) {
-                loadPlaylist(tracks, title, cover, durations, totalDuration);
+            String id = intent.getStringExtra("playlistId");
+            PlaylistRegistry.Playlist registered = id != null ? PlaylistRegistry.getInstance().get(id) : null;
+            if (registered == null) {
+                Log.w(TAG, "Playlist not registered: " + id);
+            } else if (registered.size() > 0) {
+                long[] durations = registered.durations();
+                long totalDuration = 0;
+                for (long duration : durations) {
+                    totalDuration += duration;
+                }
+                loadPlaylist(id, registered.revision, registered.trackIds(), intent.getStringExtra("title"),
+                    intent.getStringExtra("cover"), durations, totalDuration);
+            }
+        } else if (ACTION_UPDATE_DURATIONS.equals(action)) {
+            String id = intent.getStringExtra("playlistId");
+            if (playlistId.equals(id)) {
+                updateDurations(intent.getIntExtra("offset", 0), intent.getLongArrayExtra("durations"));
             }
         } else if (ACTION_PLAY.equals(action)) {
             play();
@@ -262,31 +500,42 @@ public class NativeAudioService extends Service {
         } else if (ACTION_STOP.equals(action)) {
             stop();
         } else if (ACTION_NEXT.equals(action)) {
+            skipNext();
+        } else if (ACTION_SEEK_PLAYLIST.equals(action)) {
+            seekToPlaylistPosition(intent.getLongExtra("positionMs", 0L));
+        } else if (ACTION_PREVIOUS.equals(action)) {
             cancelScheduledNextTrack();
-            playNextWithFade();
+            playPrevious();
+        } else if (ACTION_SET_TRACK_GAP.equals(action)) {
+            setTrackGap(intent.getIntExtra("gapMs", DEFAULT_TRACK_GAP_MS));
+        } else if (ACTION_SET_CROSSFADE.equals(action)) {
+            setCrossfade(intent.getIntExtra("crossfadeMs", 0));
         }
-
-        return START_STICKY;
     }
 
-    private void loadPlaylist(List<String> tracks, String title, String cover, 
+    private void loadPlaylist(String id, String revision, int[] tracks, String title, String cover, 
                               long[] durations, long totalDuration) {
-        Log.d(TAG, "Loading playlist: " + title + ", tracks: " + tracks.size() + 
+        Log.d(TAG, "Loading playlist: " + title + ", tracks: " + tracks.length + 
               ", totalDuration: " + totalDuration);
 
-        this.playlist = new ArrayList<>(tracks);
+        this.playlistId = id != null ? id : "";
+        this.playlistRevision = revision != null ? revision : "";
+        this.trackIds = tracks;
         this.playlistTitle = title != null ? title : "VNL Player";
         this.coverUri = cover != null ? cover : "";
-        this.playedIndices.clear();
+        this.shuffle = loadShuffle(this.playlistId, tracks.length);
         this.currentTrackIndex = -1;
+        this.upcomingTrackIndex = -1;
 
-        if (durations != null && durations.length == tracks.size()) {
+        if (durations != null && durations.length == tracks.length) {
             this.trackDurations = durations;
             this.totalPlaylistDuration = totalDuration;
         } else {
-            this.trackDurations = new long[tracks.size()];
+            this.trackDurations = new long[tracks.length];
             this.totalPlaylistDuration = 0;
         }
+        rebuildTimeline();
+        saveQueue();
 
         if (!coverUri.isEmpty()) {
             loadCoverAsync(coverUri);
@@ -298,141 +547,356 @@ public class NativeAudioService extends Service {
         playNext();
     }
 
+    private void updateDurations(int offset, long[] durations) {
+        if (durations == null || trackDurations == null) return;
+
+        for (int i = 0; i < durations.length && offset + i < trackDurations.length; i++) {
+            int index = offset + i;
+            if (index < 0) continue;
+            totalPlaylistDuration += durations[i] - trackDurations[index];
+            trackDurations[index] = durations[i];
+            timeline.setDuration(index, durations[i]);
+        }
+
+        if (metadataRefreshRunnable == null) {
+            metadataRefreshRunnable = () -> {
+                metadataRefreshRunnable = null;
+                updateMediaSessionMetadata();
+                updatePlaybackState();
+            };
+            playbackHandler.postDelayed(metadataRefreshRunnable, METADATA_REFRESH_DELAY_MS);
+        }
+        if (queueSaveRunnable == null) {
+            queueSaveRunnable = () -> {
+                queueSaveRunnable = null;
+                saveQueue();
+            };
+            playbackHandler.postDelayed(queueSaveRunnable, QUEUE_SAVE_DELAY_MS);
+        }
+    }
+
     private void loadCoverAsync(String uri) {
-        new Thread(() -> {
-            try {
-                if (uri.startsWith("content://") || uri.startsWith("file://")) {
-                    InputStream inputStream = getContentResolver().openInputStream(Uri.parse(uri));
-                    coverBitmap = BitmapFactory.decodeStream(inputStream);
-                    if (inputStream != null) inputStream.close();
-                }
-                mainHandler.post(() -> {
-                    updateNotification();
-                    updateMediaSessionMetadata();
-                });
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to load cover: " + e.getMessage());
-                coverBitmap = null;
-            }
-        }).start();
+        final int generation = playlistCoverGeneration.incrementAndGet();
+        if (playlistCoverTask != null) playlistCoverTask.cancel(false);
+
+        playlistCoverTask = coverExecutor.submit(() -> {
+            final Bitmap loaded = uri.startsWith("content://") || uri.startsWith("file://")
+                ? artworkDecoder.decode(getContentResolver(), Uri.parse(uri))
+                : null;
+            playbackHandler.post(() -> {
+                if (generation != playlistCoverGeneration.get()) return;
+                coverBitmap = loaded;
+                updateNotification();
+                updateMediaSessionMetadata();
+            });
+        });
     }
 
     private void playTrack(int index) {
+        playTrack(index, 0);
+    }
+
+    private void playTrack(int index, long startPositionMs) {
+        playTrack(index, startPositionMs, true);
+    }
+
+    private void playTrack(int index, long startPositionMs, boolean playWhenReady) {
         cancelScheduledNextTrack();
-        if (index < 0 || index >= playlist.size()) {
+        cancelCrossfade();
+        if (index < 0 || index >= trackIds.length) {
             Log.w(TAG, "Invalid track index: " + index);
             return;
         }
 
         currentTrackIndex = index;
-        playedIndices.add(index);
+        upcomingTrackIndex = shuffle.peekNext();
+        saveShuffle();
+        requestSnapshot(SNAPSHOT_DEBOUNCE_MS);
 
-        String path = playlist.get(index);
+        String path = trackUri(index);
         Log.d(TAG, "Playing track " + index + ": " + path);
 
-        Uri uri = Uri.parse(path);
-        MediaItem mediaItem = MediaItem.fromUri(uri);
-
-        player.setVolume(0f);
-        player.setMediaItem(mediaItem);
+        gainRamp.setGain(0f);
+        silentTail = false;
+        player.setMediaItem(mediaItemFor(index), startPositionMs);
+        queueUpcomingTrack();
         player.prepare();
-        player.play();
+        if (playWhenReady) {
+            player.play();
+            fadeIn();
+        }
 
-        fadeIn();
         updateNotification();
-        extractAndNotifyCover(path);
+        extractAndNotifyCover(path, upcomingTrackIndex >= 0 ? trackUri(upcomingTrackIndex) : null);
     }
 
-    private void extractAndNotifyCover(String path) {
-        new Thread(() -> {
-            MediaMetadataRetriever mmr = null;
-            try {
-                mmr = new MediaMetadataRetriever();
- 
-                if (path.startsWith("content://") || path.startsWith("file://")) {
-                    mmr.setDataSource(this, Uri.parse(path));
-                } else {
-                    try {
-                        mmr.setDataSource(path);
-                    } catch (Exception e1) {
-                         mmr.setDataSource(this, Uri.parse("file://" + path));
-                    }
-                }
-                
-                byte[] data = mmr.getEmbeddedPicture();
-                
-                if (data != null) {
-                    String base64 = Base64.encodeToString(data, Base64.NO_WRAP);
-                    mainHandler.post(() -> notifyMetadata(base64));
-                } else {
-                    mainHandler.post(() -> notifyMetadata(null));
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error extracting cover: " + e.getMessage());
-                mainHandler.post(() -> notifyMetadata(null));
-            } finally {
-                if (mmr != null) {
-                    try {
-                        mmr.release();
-                    } catch (Exception ignored) {}
-                }
-            }
-        }).start();
+    private String trackUri(int index) {
+        return TrackRegistry.getInstance().uri(trackIds[index]);
     }
 
-    private void notifyMetadata(String base64) {
-        if (pluginInstance != null) {
-            pluginInstance.notifyMetadata(base64);
+    private MediaItem mediaItemFor(int index) {
+        return new MediaItem.Builder()
+            .setUri(Uri.parse(trackUri(index)))
+            .setMediaId(playlistId + ":" + index)
+            .build();
+    }
+
+    /**
+     * Appends the upcoming shuffled track behind the current one so ExoPlayer
+     * buffers it and warms its decoder while the current track plays.
+     */
+    private void queueUpcomingTrack() {
+        if (crossfadeMs > 0) return;
+        if (upcomingTrackIndex >= 0 && upcomingTrackIndex != currentTrackIndex) {
+            player.addMediaItem(mediaItemFor(upcomingTrackIndex));
         }
     }
 
+    private boolean hasQueuedTrack() {
+        return upcomingTrackIndex >= 0 && player.getCurrentMediaItemIndex() + 1 < player.getMediaItemCount();
+    }
 
-    private long getPlaylistPosition() {
-        long position = 0;
+    private void onQueuedTrackStarted(MediaItem mediaItem) {
+        if (!(playlistId + ":" + upcomingTrackIndex).equals(mediaItem.mediaId)) return;
 
-        for (int idx : playedIndices) {
-            if (idx != currentTrackIndex && idx < trackDurations.length) {
-                position += trackDurations[idx];
-            }
+        cancelScheduledNextTrack();
+        while (player.getCurrentMediaItemIndex() > 0) {
+            player.removeMediaItem(0);
         }
 
+        currentTrackIndex = advanceShuffle();
+        Log.d(TAG, "Advanced to queued track " + currentTrackIndex);
+
+        upcomingTrackIndex = shuffle.peekNext();
+        queueUpcomingTrack();
+        saveShuffle();
+        requestSnapshot(SNAPSHOT_DEBOUNCE_MS);
+
+        updateNotification();
+        updatePlaybackState();
+        String path = trackUri(currentTrackIndex);
+        extractAndNotifyCover(path, upcomingTrackIndex >= 0 ? trackUri(upcomingTrackIndex) : null);
+    }
+
+    private void setTrackGap(int gapMs) {
+        trackGapMs = Math.max(0, gapMs);
+        Log.d(TAG, "Track gap: " + trackGapMs + "ms");
         if (player != null) {
-            position += player.getCurrentPosition();
+            player.setPauseAtEndOfMediaItems(trackGapMs > 0);
         }
+        if (standbyPlayer != null) {
+            standbyPlayer.setPauseAtEndOfMediaItems(trackGapMs > 0);
+        }
+    }
 
-        return position;
+    private void setCrossfade(int durationMs) {
+        crossfadeMs = Math.max(0, Math.min(MAX_CROSSFADE_MS, durationMs));
+        Log.d(TAG, "Crossfade: " + crossfadeMs + "ms");
+        cancelCrossfade();
+        if (player == null) return;
+
+        if (crossfadeMs > 0) {
+            while (player.getMediaItemCount() > player.getCurrentMediaItemIndex() + 1) {
+                player.removeMediaItem(player.getMediaItemCount() - 1);
+            }
+            scheduleCrossfade();
+        } else {
+            if (standbyPlayer != null) {
+                standbyPlayer.release();
+                standbyPlayer = null;
+            }
+            if (currentTrackIndex >= 0 && !hasQueuedTrack()) {
+                queueUpcomingTrack();
+            }
+        }
     }
 
-    private void fadeIn() {
-        cancelFade();
-        isFadingOut = false;
+    /**
+     * Arms two one-shot timers from the current track's known duration: one
+     * preloads the upcoming track on the standby player, the other starts the
+     * overlap crossfadeMs before the end. Nothing polls in between.
+     */
+    private void scheduleCrossfade() {
+        cancelCrossfadeTimers();
+        if (crossfadeMs <= 0 || player == null || !player.isPlaying() || upcomingTrackIndex < 0) return;
+
+        long duration = trackDurations != null && currentTrackIndex >= 0 && trackDurations[currentTrackIndex] > 0
+            ? trackDurations[currentTrackIndex]
+            : player.getDuration();
+        if (duration == C.TIME_UNSET || duration <= 2L * crossfadeMs) return;
+
+        long startIn = duration - crossfadeMs - player.getCurrentPosition();
+        if (startIn <= 0) return;
+
+        preloadRunnable = this::preloadStandby;
+        crossfadeRunnable = this::startCrossfade;
+        playbackHandler.postDelayed(preloadRunnable, Math.max(0, startIn - CROSSFADE_PRELOAD_MS));
+        playbackHandler.postDelayed(crossfadeRunnable, startIn);
+    }
 
-        final float startVolume = 0f;
-        final float endVolume = targetVolume;
-        final float step = (endVolume - startVolume) / FADE_STEPS;
-        final int stepDuration = FADE_DURATION_MS / FADE_STEPS;
+    private void cancelCrossfadeTimers() {
+        if (preloadRunnable != null) {
+            playbackHandler.removeCallbacks(preloadRunnable);
+            preloadRunnable = null;
+        }
+        if (crossfadeRunnable != null) {
+            playbackHandler.removeCallbacks(crossfadeRunnable);
+            crossfadeRunnable = null;
+        }
+    }
+
+    /** Stops the timers, any overlap in progress and any preloaded standby track. */
+    private void cancelCrossfade() {
+        cancelCrossfadeTimers();
+        if (releaseOutgoingRunnable != null) {
+            playbackHandler.removeCallbacks(releaseOutgoingRunnable);
+            releaseOutgoingRunnable.run();
+        }
+        if (standbyPlayer != null && standbyTrackIndex >= 0) {
+            standbyPlayer.stop();
+            standbyPlayer.clearMediaItems();
+        }
+        standbyTrackIndex = -1;
+    }
 
-        fadeRunnable = new Runnable() {
-            float currentVolume = startVolume;
-            int currentStep = 0;
+    @OptIn(markerClass = UnstableApi.class)
+    private void preloadStandby() {
+        preloadRunnable = null;
+        // The standby player is still fading out the previous track; it preloads once released.
+        if (releaseOutgoingRunnable != null) return;
+        if (upcomingTrackIndex < 0 || standbyTrackIndex == upcomingTrackIndex) return;
+
+        if (standbyPlayer == null) {
+            LoadControl loadControl = new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(STANDBY_MIN_BUFFER_MS, STANDBY_MAX_BUFFER_MS, 1000, 1000)
+                .build();
+            standbyPlayer = buildPlayer(standbyRamp, false, loadControl);
+        }
+        standbyPlayer.setAudioSessionId(player.getAudioSessionId());
+
+        standbyRamp.setGain(0f);
+        standbyPlayer.setMediaItem(mediaItemFor(upcomingTrackIndex));
+        standbyPlayer.setPlayWhenReady(false);
+        standbyPlayer.prepare();
+        standbyTrackIndex = upcomingTrackIndex;
+        Log.d(TAG, "Preloaded track " + standbyTrackIndex + " for crossfade");
+    }
 
+    /**
+     * Swaps the standby player in as the active one and runs both together with
+     * complementary equal-power ramps. The outgoing player is stopped once its
+     * ramp drains, so at most two decoders are alive only during the overlap.
+     */
+    private void startCrossfade() {
+        crossfadeRunnable = null;
+        if (player == null || !player.isPlaying() || upcomingTrackIndex < 0) return;
+        if (standbyTrackIndex != upcomingTrackIndex) {
+            if (releaseOutgoingRunnable != null) {
+                releaseOutgoingRunnable.run();
+            }
+            preloadStandby();
+        }
+
+        final ExoPlayer outgoing = player;
+        final GainRamp outgoingRamp = gainRamp;
+        player = standbyPlayer;
+        gainRamp = standbyRamp;
+        standbyPlayer = outgoing;
+        standbyRamp = outgoingRamp;
+        standbyTrackIndex = -1;
+
+        outgoing.setAudioAttributes(AUDIO_ATTRIBUTES, false);
+        player.setAudioAttributes(AUDIO_ATTRIBUTES, true);
+
+        currentTrackIndex = advanceShuffle();
+        upcomingTrackIndex = shuffle.peekNext();
+        saveShuffle();
+        requestSnapshot(SNAPSHOT_DEBOUNCE_MS);
+        Log.d(TAG, "Crossfading into track " + currentTrackIndex);
+
+        releaseOutgoingRunnable = new Runnable() {
             @Override
             public void run() {
-                if (player == null || currentStep >= FADE_STEPS) {
-                    if (player != null) player.setVolume(endVolume);
-                    return;
+                if (releaseOutgoingRunnable != this) return;
+                playbackHandler.removeCallbacks(this);
+                releaseOutgoingRunnable = null;
+                outgoing.stop();
+                outgoing.clearMediaItems();
+                if (crossfadeRunnable != null) {
+                    preloadStandby();
                 }
-
-                currentVolume += step;
-                player.setVolume(Math.min(currentVolume, endVolume));
-                currentStep++;
-                mainHandler.postDelayed(this, stepDuration);
             }
         };
+        final Runnable release = releaseOutgoingRunnable;
+        outgoingRamp.rampTo(0f, crossfadeMs, GainRamp.Curve.EQUAL_POWER,
+            () -> playbackHandler.post(release));
+        playbackHandler.postDelayed(release, crossfadeMs + FADE_TIMEOUT_MS);
+
+        gainRamp.setGain(0f);
+        player.play();
+        gainRamp.rampTo(1f, crossfadeMs, GainRamp.Curve.EQUAL_POWER, null);
 
-        mainHandler.post(fadeRunnable);
+        updateNotification();
+        updatePlaybackState();
+        extractAndNotifyCover(trackUri(currentTrackIndex),
+            upcomingTrackIndex >= 0 ? trackUri(upcomingTrackIndex) : null);
+    }
+
+    /**
+     * Loads the current track's cover, then warms the cache with the upcoming
+     * track's. A newer request bumps the generation, which drops this result
+     * and skips the prefetch if it has not started yet.
+     */
+    private void extractAndNotifyCover(String path, String prefetchPath) {
+        final int generation = coverGeneration.incrementAndGet();
+        if (coverTask != null) coverTask.cancel(false);
+
+        coverTask = coverExecutor.submit(() -> {
+            CoverCache cache = CoverCache.getInstance(this);
+            CoverCache.Cover cover = cache.get(path);
+            playbackHandler.post(() -> {
+                if (generation != coverGeneration.get()) return;
+                trackCoverBitmap = cover != null ? cover.bitmap : null;
+                updateMediaSessionMetadata();
+                updateNotification();
+                notifyMetadata(cover != null ? cover.file.getAbsolutePath() : null);
+            });
+
+            if (prefetchPath != null && generation == coverGeneration.get()) {
+                cache.get(prefetchPath);
+            }
+        });
     }
 
+    private void notifyMetadata(String coverPath) {
+        if (pluginInstance != null) {
+            pluginInstance.notifyMetadata(coverPath);
+        }
+    }
+
+
+    private long getPlaylistPosition() {
+        long position = timeline.prefix(shuffle.position() - 1);
+
+        if (player != null) {
+            position += player.getCurrentPosition();
+        }
+
+        return position;
+    }
+
+    private void fadeIn() {
+        cancelFade();
+        isFadingOut = false;
+        gainRamp.rampTo(1f, FADE_DURATION_MS, GainRamp.Curve.EQUAL_POWER, null);
+    }
+
+    /**
+     * Ramps the gain down inside the audio pipeline and runs onComplete once the
+     * sink's playout position has passed the ramp's last frame, so nothing
+     * audible is still buffered. A timeout covers a pipeline that stops
+     * consuming audio mid-ramp.
+     */
     private void fadeOut(Runnable onComplete) {
         cancelFade();
         isFadingOut = true;
@@ -443,36 +907,24 @@ public class NativeAudioService extends Service {
             return;
         }
 
-        final float startVolume = player.getVolume();
-        final float step = startVolume / FADE_STEPS;
-        final int stepDuration = (FADE_DURATION_MS / 2) / FADE_STEPS;
-
-        fadeRunnable = new Runnable() {
-            float currentVolume = startVolume;
-            int currentStep = 0;
-
-            @Override
-            public void run() {
-                if (player == null || currentStep >= FADE_STEPS) {
-                    if (player != null) player.setVolume(0f);
-                    isFadingOut = false;
-                    if (onComplete != null) onComplete.run();
-                    return;
-                }
-
-                currentVolume -= step;
-                player.setVolume(Math.max(currentVolume, 0f));
-                currentStep++;
-                mainHandler.postDelayed(this, stepDuration);
-            }
+        final int generation = fadeGeneration;
+        final Runnable finish = () -> {
+            if (generation != fadeGeneration) return;
+            cancelFade();
+            isFadingOut = false;
+            if (onComplete != null) onComplete.run();
         };
 
-        mainHandler.post(fadeRunnable);
+        fadeRunnable = finish;
+        gainRamp.rampTo(0f, FADE_OUT_DURATION_MS, GainRamp.Curve.EQUAL_POWER, null,
+            () -> playbackHandler.postDelayed(finish, FADE_SETTLE_MS));
+        playbackHandler.postDelayed(finish, FADE_OUT_DURATION_MS + FADE_TIMEOUT_MS);
     }
 
     private void cancelFade() {
+        fadeGeneration++;
         if (fadeRunnable != null) {
-            mainHandler.removeCallbacks(fadeRunnable);
+            playbackHandler.removeCallbacks(fadeRunnable);
             fadeRunnable = null;
         }
     }
@@ -480,9 +932,15 @@ public class NativeAudioService extends Service {
     public void play() {
         Log.d(TAG, "play()");
         if (player != null) {
-            if (currentTrackIndex < 0 && !playlist.isEmpty()) {
+            if (currentTrackIndex < 0 && trackIds.length > 0) {
                 playNext();
             } else {
+                if (silentTail) {
+                    // Flush the faded-out samples left in the sink so they don't play as a gap.
+                    player.seekTo(player.getCurrentPosition());
+                    gainRamp.setGain(0f);
+                    silentTail = false;
+                }
                 player.play();
                 fadeIn();
             }
@@ -491,10 +949,12 @@ public class NativeAudioService extends Service {
 
     public void pause() {
         Log.d(TAG, "pause()");
+        cancelCrossfade();
         if (player != null && player.isPlaying()) {
             fadeOut(() -> {
                 if (player != null) {
                     player.pause();
+                    silentTail = true;
                     notifyPlayState(false);
                 }
             });
@@ -504,10 +964,22 @@ public class NativeAudioService extends Service {
     public void stop() {
         Log.d(TAG, "stop()");
         cancelFade();
+        cancelCrossfade();
         stopProgressUpdates();
         if (player != null) {
             player.stop();
         }
+        cancelSnapshot();
+        if (queueSaveRunnable != null) {
+            playbackHandler.removeCallbacks(queueSaveRunnable);
+            queueSaveRunnable = null;
+        }
+        final File snapshot = snapshotFile();
+        final File queue = queueFile();
+        ioExecutor.execute(() -> {
+            snapshot.delete();
+            queue.delete();
+        });
         if (mediaSession != null) {
             mediaSession.setActive(false);
         }
@@ -516,61 +988,385 @@ public class NativeAudioService extends Service {
     }
 
     public void playNext() {
-        if (playlist.isEmpty()) {
+        if (trackIds.length == 0) {
             Log.w(TAG, "Playlist is empty");
             return;
         }
 
-        if (playedIndices.size() >= playlist.size()) {
-            Log.d(TAG, "All tracks played, resetting shuffle");
-            playedIndices.clear();
+        if (hasQueuedTrack()) {
+            cancelScheduledNextTrack();
+            gainRamp.setGain(0f);
+            player.seekToNextMediaItem();
+            player.play();
+            fadeIn();
+            return;
+        }
+
+        int nextIndex = advanceShuffle();
+        Log.d(TAG, "Next track: " + nextIndex + ", played: " + shuffle.position() + "/" + trackIds.length);
+        playTrack(nextIndex);
+    }
+
+    private int advanceShuffle() {
+        int cycle = shuffle.cycle();
+        int index = shuffle.next();
+        if (shuffle.cycle() != cycle) {
+            rebuildTimeline();
         }
+        return index;
+    }
 
-        List<Integer> available = new ArrayList<>();
-        for (int i = 0; i < playlist.size(); i++) {
-            if (!playedIndices.contains(i)) {
-                available.add(i);
+    private void rebuildTimeline() {
+        timeline = new PlaylistTimeline(shuffle.order(), trackDurations);
+    }
+
+    /** Jumps to the track and offset at the given time along the current shuffle cycle. */
+    public void seekToPlaylistPosition(long positionMs) {
+        if (trackIds.length == 0 || player == null) return;
+
+        int position = timeline.findPosition(positionMs);
+        long offset = Math.max(0, positionMs - timeline.prefix(position));
+        int index = shuffle.moveTo(position);
+        if (index < 0) return;
+
+        Log.d(TAG, "Seek to " + positionMs + "ms: track " + index + " at " + offset + "ms");
+        if (index == currentTrackIndex) {
+            player.seekTo(offset);
+            scheduleCrossfade();
+        } else {
+            playTrack(index, offset);
+        }
+        updatePlaybackState();
+        requestSnapshot(SNAPSHOT_DEBOUNCE_MS);
+    }
+
+    public void playPrevious() {
+        if (trackIds.length == 0 || player == null) return;
+
+        if (player.getCurrentPosition() > RESTART_THRESHOLD_MS) {
+            player.seekTo(0);
+            scheduleCrossfade();
+            return;
+        }
+
+        int index = shuffle.previous();
+        if (index < 0) {
+            player.seekTo(0);
+            scheduleCrossfade();
+            return;
+        }
+        Log.d(TAG, "Previous track: " + index);
+        playTrack(index);
+    }
+
+    private ShuffleEngine loadShuffle(String id, int size) {
+        File file = shuffleFile(id);
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                ShuffleEngine restored = ShuffleEngine.readFrom(in, size, random);
+                if (restored != null) {
+                    savedShuffle = restored;
+                    savedShuffleCycle = restored.cycle();
+                    return restored;
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to restore shuffle order: " + e.getMessage());
             }
         }
+        return new ShuffleEngine(size, random);
+    }
 
-        Random random = new Random();
-        int nextIndex = available.get(random.nextInt(available.size()));
+    /**
+     * Persists the shuffle state after a track change. The permutation is only
+     * written when a new one was drawn; otherwise the stored cursor is updated
+     * in place.
+     */
+    private void saveShuffle() {
+        final File file = shuffleFile(playlistId);
+        if (shuffle == savedShuffle && shuffle.cycle() == savedShuffleCycle) {
+            final int cursor = shuffle.cursor();
+            ioExecutor.execute(() -> {
+                if (!file.exists()) return;
+                try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                    out.seek(ShuffleEngine.CURSOR_OFFSET);
+                    out.writeInt(cursor);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to save shuffle cursor: " + e.getMessage());
+                }
+            });
+            return;
+        }
 
-        Log.d(TAG, "Next track: " + nextIndex + ", played: " + playedIndices.size() + "/" + playlist.size());
-        playTrack(nextIndex);
+        savedShuffle = shuffle;
+        savedShuffleCycle = shuffle.cycle();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + shuffle.size() * 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            shuffle.writeTo(out);
+        } catch (IOException e) {
+            return;
+        }
+
+        ioExecutor.execute(() -> {
+            File dir = file.getParentFile();
+            File tmp = new File(dir, file.getName() + ".tmp");
+            try {
+                if (!dir.exists() && !dir.mkdirs()) return;
+                try (FileOutputStream out = new FileOutputStream(tmp)) {
+                    bytes.writeTo(out);
+                }
+                if (!tmp.renameTo(file)) tmp.delete();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to save shuffle order: " + e.getMessage());
+            }
+        });
+    }
+
+    private File shuffleFile(String id) {
+        return new File(new File(getFilesDir(), "shuffle"), Hashes.sha1Hex(id) + ".bin");
+    }
+
+    private File snapshotFile() {
+        return new File(getFilesDir(), "playback.bin");
     }
 
-    private void playNextWithFade() {
+    private File queueFile() {
+        return new File(getFilesDir(), "playback_queue.bin");
+    }
+
+    /**
+     * Restores the queue and current track from the last snapshot, prepared but
+     * paused. Only runs when the service starts without a plugin command: a
+     * sticky restart then resumes it, a media button acts on it.
+     */
+    private void restoreSnapshot() {
+        if (trackIds.length > 0 || player == null) return;
+
+        PlaybackSnapshot snapshot = PlaybackSnapshot.load(snapshotFile());
+        if (snapshot == null) return;
+        PlaybackQueue queue = PlaybackQueue.load(queueFile());
+        if (!snapshot.matches(queue)) return;
+
+        playlistId = queue.playlistId;
+        playlistRevision = queue.revision;
+        trackIds = PlaylistLibrary.getInstance(this).intern(queue.tracks);
+        playlistTitle = queue.title;
+        coverUri = queue.cover;
+        trackDurations = queue.durations;
+        totalPlaylistDuration = queue.totalDuration;
+        shuffle = loadShuffle(playlistId, trackIds.length);
+        if (snapshot.shuffleCursor >= 0 && snapshot.shuffleCursor != shuffle.cursor()) {
+            shuffle.moveTo(snapshot.shuffleCursor);
+        }
+        rebuildTimeline();
+        resumeOnRestart = snapshot.playing;
+        Log.d(TAG, "Restored playlist " + playlistId + " at track " + snapshot.currentTrackIndex
+            + ", " + snapshot.positionMs + "ms");
+
+        if (!coverUri.isEmpty()) {
+            loadCoverAsync(coverUri);
+        }
+        updateMediaSessionMetadata();
+        if (snapshot.currentTrackIndex >= 0) {
+            playTrack(snapshot.currentTrackIndex, snapshot.positionMs, false);
+        }
+    }
+
+    /**
+     * Saves a snapshot after delayMs unless one is already due sooner. While
+     * playing, each save schedules the next so the offset stays roughly current.
+     */
+    private void requestSnapshot(long delayMs) {
+        long dueAt = SystemClock.uptimeMillis() + delayMs;
+        if (snapshotRunnable != null) {
+            if (snapshotDueAt <= dueAt) return;
+            playbackHandler.removeCallbacks(snapshotRunnable);
+        }
+
+        snapshotDueAt = dueAt;
+        snapshotRunnable = () -> {
+            snapshotRunnable = null;
+            saveSnapshot();
+            if (isPlaying()) {
+                requestSnapshot(SNAPSHOT_INTERVAL_MS);
+            }
+        };
+        playbackHandler.postDelayed(snapshotRunnable, delayMs);
+    }
+
+    private void cancelSnapshot() {
+        if (snapshotRunnable != null) {
+            playbackHandler.removeCallbacks(snapshotRunnable);
+            snapshotRunnable = null;
+        }
+    }
+
+    private void saveSnapshot() {
+        if (trackIds.length == 0 || player == null) return;
+
+        final PlaybackSnapshot snapshot = new PlaybackSnapshot(playlistId, playlistRevision, currentTrackIndex,
+            player.getCurrentPosition(), shuffle.cursor(), isPlaying() && !isFadingOut);
+        final File file = snapshotFile();
+        ioExecutor.execute(() -> {
+            try {
+                snapshot.save(file);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to save playback snapshot: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Writes the loaded queue; done per playlist load and after duration updates settle. */
+    private void saveQueue() {
+        if (trackIds.length == 0 || trackDurations == null) return;
+
+        // Resolve ids here, not on the io thread, and never store a queue with holes.
+        List<String> tracks = new ArrayList<>(TrackRegistry.getInstance().uris(trackIds));
+        if (tracks.contains(null)) {
+            Log.w(TAG, "Not saving playback queue: unresolved track id");
+            return;
+        }
+
+        final PlaybackQueue queue = new PlaybackQueue(playlistId, playlistRevision, playlistTitle, coverUri,
+            tracks, trackDurations.clone(), totalPlaylistDuration);
+        final File file = queueFile();
+        ioExecutor.execute(() -> {
+            try {
+                queue.save(file);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Failed to save playback queue: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Skips forward with a fade. Taps that arrive while that fade is still
+     * running only add to the count, so a burst of N taps costs one fade and
+     * one prepare and lands N tracks ahead.
+     */
+    private void skipNext() {
+        cancelScheduledNextTrack();
+        if (pendingSkips > 0 && skipFadeGeneration == fadeGeneration) {
+            pendingSkips++;
+            return;
+        }
+
+        pendingSkips = 1;
         if (player != null && player.isPlaying()) {
-            fadeOut(this::playNext);
+            fadeOut(this::performSkips);
+            skipFadeGeneration = fadeGeneration;
         } else {
+            performSkips();
+        }
+    }
+
+    private void performSkips() {
+        int skips = pendingSkips;
+        pendingSkips = 0;
+        if (skips <= 1 || trackIds.length == 0) {
             playNext();
+            return;
         }
+
+        for (int i = 1; i < skips; i++) {
+            advanceShuffle();
+        }
+        Log.d(TAG, "Coalesced " + skips + " skips");
+        playTrack(advanceShuffle());
     }
 
     public boolean isPlaying() {
         return player != null && player.isPlaying();
     }
 
+    /**
+     * Emits progress to JS once per second of playback, aligned to whole seconds,
+     * while the UI is visible, the screen is on and someone listens. Otherwise no
+     * ticks run at all: the MediaSession extrapolates position from the state
+     * published on each real transition.
+     */
     private void startProgressUpdates() {
         stopProgressUpdates();
+        if (!shouldEmitProgress()) return;
+
         progressRunnable = new Runnable() {
             @Override
             public void run() {
-                if (player != null && player.isPlaying()) {
-                    long playlistPosition = getPlaylistPosition();
-                    notifyProgress(playlistPosition, totalPlaylistDuration);
-                    updatePlaybackState();
-                    mainHandler.postDelayed(this, 1000);
+                if (player == null || !player.isPlaying() || !shouldEmitProgress()) {
+                    progressRunnable = null;
+                    return;
                 }
+
+                if (pluginInstance.hasProgressListeners()) {
+                    notifyProgress(getPlaylistPosition(), totalPlaylistDuration);
+                    long trackPosition = player.getCurrentPosition();
+                    playbackHandler.postDelayed(this, PROGRESS_INTERVAL_MS - trackPosition % PROGRESS_INTERVAL_MS);
+                } else {
+                    playbackHandler.postDelayed(this, IDLE_PROGRESS_INTERVAL_MS);
+                }
+            }
+        };
+        playbackHandler.post(progressRunnable);
+    }
+
+    private boolean shouldEmitProgress() {
+        return uiVisible && screenOn && pluginInstance != null;
+    }
+
+    /** @return how long each command type waited for the playback thread. */
+    public static Map<String, CommandLatencyTracker.Stats> getCommandLatency() {
+        return commandLatency.snapshot();
+    }
+
+    /** @return time from issuing each command type until its audio started playing out. */
+    public static Map<String, CommandLatencyTracker.Stats> getAudibleLatency() {
+        return audibleLatency.snapshot();
+    }
+
+    public static void resetCommandLatency() {
+        commandLatency.reset();
+        audibleLatency.reset();
+    }
+
+    /** Called by the plugin as the activity comes to the foreground or leaves it. */
+    public static void setUiVisible(boolean visible) {
+        uiVisible = visible;
+        NativeAudioService service = activeService;
+        if (service != null) {
+            service.playbackHandler.post(service::onVisibilityChanged);
+        }
+    }
+
+    private void onVisibilityChanged() {
+        if (isPlaying() && shouldEmitProgress()) {
+            startProgressUpdates();
+        } else {
+            stopProgressUpdates();
+        }
+    }
+
+    private void registerScreenReceiver() {
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        screenOn = powerManager == null || powerManager.isInteractive();
+
+        screenReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                boolean on = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+                playbackHandler.post(() -> {
+                    screenOn = on;
+                    Log.d(TAG, "Screen on: " + screenOn);
+                    onVisibilityChanged();
+                });
             }
         };
-        mainHandler.post(progressRunnable);
+        IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(screenReceiver, filter);
     }
 
     private void stopProgressUpdates() {
         if (progressRunnable != null) {
-            mainHandler.removeCallbacks(progressRunnable);
+            playbackHandler.removeCallbacks(progressRunnable);
             progressRunnable = null;
         }
     }
@@ -593,7 +1389,9 @@ public class NativeAudioService extends Service {
         long actions = PlaybackStateCompat.ACTION_PLAY
             | PlaybackStateCompat.ACTION_PAUSE
             | PlaybackStateCompat.ACTION_PLAY_PAUSE
-            | PlaybackStateCompat.ACTION_STOP;
+            | PlaybackStateCompat.ACTION_STOP
+            | PlaybackStateCompat.ACTION_SKIP_TO_NEXT
+            | PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS;
 
         int state = isPlaying() ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_PAUSED;
         float speed = isPlaying() ? 1.0f : 0f;
@@ -614,8 +1412,9 @@ public class NativeAudioService extends Service {
             .putString(MediaMetadataCompat.METADATA_KEY_TITLE, playlistTitle)
             .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, totalPlaylistDuration);
 
-        if (coverBitmap != null) {
-            builder.putBitmap(MediaMetadataCompat.METADATA_KEY_ALBUM_ART, coverBitmap);
+        Bitmap artwork = trackCoverBitmap != null ? trackCoverBitmap : coverBitmap;
+        if (artwork != null) {
+            builder.putBitmap(MediaMetadataCompat.METADATA_KEY_ALBUM_ART, artwork);
         }
 
         mediaSession.setMetadata(builder.build());
@@ -660,8 +1459,9 @@ public class NativeAudioService extends Service {
                 .setShowActionsInCompactView()
             );
 
-        if (coverBitmap != null) {
-            builder.setLargeIcon(coverBitmap);
+        Bitmap artwork = trackCoverBitmap != null ? trackCoverBitmap : coverBitmap;
+        if (artwork != null) {
+            builder.setLargeIcon(artwork);
         }
 
         Notification notification = builder.build();
@@ -677,19 +1477,46 @@ public class NativeAudioService extends Service {
     @Override
     public void onDestroy() {
         Log.d(TAG, "Service onDestroy");
-        cancelFade();
-        stopProgressUpdates();
-
-        if (mediaSession != null) {
-            mediaSession.setActive(false);
-            mediaSession.release();
-            mediaSession = null;
+        running = false;
+        if (screenReceiver != null) {
+            unregisterReceiver(screenReceiver);
+            screenReceiver = null;
         }
-
-        if (player != null) {
-            player.release();
-            player = null;
+        if (activeService == this) {
+            activeService = null;
         }
+        coverGeneration.incrementAndGet();
+        playlistCoverGeneration.incrementAndGet();
+
+        // Commands and timers queued ahead of this still run and may submit to
+        // the executors, so they are shut down by the last runnable instead.
+        playbackHandler.post(() -> {
+            playbackHandler.removeCallbacksAndMessages(null);
+            metadataRefreshRunnable = null;
+            fadeRunnable = null;
+            progressRunnable = null;
+            nextTrackRunnable = null;
+
+            if (mediaSession != null) {
+                mediaSession.setActive(false);
+                mediaSession.release();
+                mediaSession = null;
+            }
+
+            if (player != null) {
+                player.release();
+                player = null;
+            }
+
+            if (standbyPlayer != null) {
+                standbyPlayer.release();
+                standbyPlayer = null;
+            }
+
+            coverExecutor.shutdownNow();
+            ioExecutor.shutdown();
+        });
+        playbackThread.quitSafely();
 
         super.onDestroy();
     }
@@ -0,0 +1,89 @@
+package io.github.toraburumeka.sofy;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The loaded playlist as the service needs it to resume without the WebView:
+ * track URIs, durations, title and cover. Written once per playlist load,
+ * keyed by playlist id and revision; {@link PlaybackSnapshot} records the
+ * position within it.
+ */
+public class PlaybackQueue {
+    private static final int MAGIC = 0x51554555;
+    private static final int VERSION = 1;
+
+    public final String playlistId;
+    public final String revision;
+    public final String title;
+    public final String cover;
+    public final List<String> tracks;
+    public final long[] durations;
+    public final long totalDuration;
+
+    public PlaybackQueue(String playlistId, String revision, String title, String cover,
+                         List<String> tracks, long[] durations, long totalDuration) {
+        this.playlistId = playlistId;
+        this.revision = revision;
+        this.title = title;
+        this.cover = cover;
+        this.tracks = tracks;
+        this.durations = durations;
+        this.totalDuration = totalDuration;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(playlistId);
+        out.writeUTF(revision);
+        out.writeUTF(title);
+        out.writeUTF(cover);
+        out.writeInt(tracks.size());
+        for (int i = 0; i < tracks.size(); i++) {
+            out.writeUTF(tracks.get(i));
+            out.writeLong(i < durations.length ? durations[i] : 0);
+        }
+        out.writeLong(totalDuration);
+    }
+
+    /** @return the stored queue, or null if the data is not a valid queue. */
+    public static PlaybackQueue readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+        String playlistId = in.readUTF();
+        String revision = in.readUTF();
+        String title = in.readUTF();
+        String cover = in.readUTF();
+        int count = in.readInt();
+        if (count <= 0) return null;
+
+        List<String> tracks = new ArrayList<>(count);
+        long[] durations = new long[count];
+        for (int i = 0; i < count; i++) {
+            tracks.add(in.readUTF());
+            durations[i] = in.readLong();
+        }
+        return new PlaybackQueue(playlistId, revision, title, cover, tracks, durations, in.readLong());
+    }
+
+    public void save(File file) throws IOException {
+        AtomicFiles.write(file, this::writeTo);
+    }
+
+    /** @return the queue stored in the file, or null if there is none or it is unreadable. */
+    public static PlaybackQueue load(File file) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return readFrom(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.toraburumeka.sofy;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Where playback stands in the saved {@link PlaybackQueue}: current track,
+ * offset, shuffle cursor and whether it was playing. It is a few dozen bytes,
+ * so the service rewrites it on every transition and periodically while
+ * playing; the queue itself is only written when a playlist is loaded.
+ */
+public class PlaybackSnapshot {
+    private static final int MAGIC = 0x504c4159;
+    private static final int VERSION = 2;
+
+    public final String playlistId;
+    public final String revision;
+    public final int currentTrackIndex;
+    public final long positionMs;
+    public final int shuffleCursor;
+    public final boolean playing;
+
+    public PlaybackSnapshot(String playlistId, String revision, int currentTrackIndex, long positionMs,
+                            int shuffleCursor, boolean playing) {
+        this.playlistId = playlistId;
+        this.revision = revision;
+        this.currentTrackIndex = currentTrackIndex;
+        this.positionMs = positionMs;
+        this.shuffleCursor = shuffleCursor;
+        this.playing = playing;
+    }
+
+    /** @return true if this snapshot was taken while the given queue was loaded. */
+    public boolean matches(PlaybackQueue queue) {
+        return queue != null && queue.playlistId.equals(playlistId) && queue.revision.equals(revision)
+            && currentTrackIndex < queue.tracks.size() && shuffleCursor < queue.tracks.size();
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(playlistId);
+        out.writeUTF(revision);
+        out.writeInt(currentTrackIndex);
+        out.writeLong(positionMs);
+        out.writeInt(shuffleCursor);
+        out.writeBoolean(playing);
+    }
+
+    /** @return the stored snapshot, or null if the data is not a valid snapshot. */
+    public static PlaybackSnapshot readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+        String playlistId = in.readUTF();
+        String revision = in.readUTF();
+        int currentTrackIndex = in.readInt();
+        long positionMs = in.readLong();
+        int shuffleCursor = in.readInt();
+        boolean playing = in.readBoolean();
+        if (currentTrackIndex < -1 || shuffleCursor < -1) return null;
+
+        return new PlaybackSnapshot(playlistId, revision, currentTrackIndex, Math.max(0, positionMs),
+            shuffleCursor, playing);
+    }
+
+    public void save(File file) throws IOException {
+        AtomicFiles.write(file, this::writeTo);
+    }
+
+    /** @return the snapshot stored in the file, or null if there is none or it is unreadable. */
+    public static PlaybackSnapshot load(File file) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return readFrom(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package io.github.toraburumeka.sofy;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Playlist metadata and track lists, one row per playlist and one per track,
+ * so an edit rewrites only the rows it touches. Multi-row writes run in a
+ * single transaction. Track URIs are stored once in the tracks table and
+ * referenced by id. Rows no playlist references are pruned by the write that
+ * dropped them, unless {@link TrackRegistry} still holds the id, so a URI
+ * keeps its id for as long as this process uses it.
+ */
+public class PlaylistLibrary extends SQLiteOpenHelper {
+    private static final String DB_NAME = "playlist_library.db";
+    private static final int DB_VERSION = 1;
+
+    public static final String COLUMN_TITLE = "title";
+    public static final String COLUMN_COVER_URL = "cover_url";
+    public static final String COLUMN_TREE_URI = "tree_uri";
+    public static final String COLUMN_IS_LOCAL = "is_local";
+    public static final String COLUMN_CREATED_AT = "created_at";
+    public static final String COLUMN_COLOR_DATA = "color_data";
+
+    private static final String PLAYLIST_COLUMNS =
+        "id, title, cover_url, tree_uri, is_local, created_at, color_data, track_count";
+
+    private static PlaylistLibrary instance;
+
+    private final TrackRegistry registry;
+
+    public static synchronized PlaylistLibrary getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlaylistLibrary(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PlaylistLibrary(Context context) {
+        this(context, DB_NAME, TrackRegistry.getInstance());
+    }
+
+    /** @param name the database file, or null for an in-memory database in tests */
+    PlaylistLibrary(Context context, String name, TrackRegistry registry) {
+        super(context, name, null, DB_VERSION);
+        this.registry = registry;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE playlists ("
+            + "id TEXT PRIMARY KEY NOT NULL, "
+            + "title TEXT, "
+            + "cover_url TEXT, "
+            + "tree_uri TEXT, "
+            + "is_local INTEGER NOT NULL DEFAULT 0, "
+            + "created_at INTEGER NOT NULL DEFAULT 0, "
+            + "position INTEGER NOT NULL DEFAULT 0, "
+            + "color_data TEXT, "
+            + "track_count INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX playlists_position ON playlists (position)");
+        db.execSQL("CREATE INDEX playlists_tree_uri ON playlists (tree_uri)");
+        db.execSQL("CREATE TABLE tracks ("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "uri TEXT NOT NULL UNIQUE)");
+        db.execSQL("CREATE TABLE playlist_tracks ("
+            + "playlist_id TEXT NOT NULL, "
+            + "position INTEGER NOT NULL, "
+            + "track_id INTEGER NOT NULL, "
+            + "PRIMARY KEY (playlist_id, position)) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX playlist_tracks_track_id ON playlist_tracks (track_id)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS playlist_tracks");
+        db.execSQL("DROP TABLE IF EXISTS tracks");
+        db.execSQL("DROP TABLE IF EXISTS playlists");
+        onCreate(db);
+    }
+
+    public static class Playlist {
+        public final String id;
+        public final String title;
+        public final String coverUrl;
+        public final String treeUri;
+        public final boolean isLocal;
+        public final long createdAt;
+        public final String colorData;
+        public final int trackCount;
+        public List<String> tracks;
+
+        Playlist(Cursor cursor) {
+            id = cursor.getString(0);
+            title = cursor.getString(1);
+            coverUrl = cursor.getString(2);
+            treeUri = cursor.getString(3);
+            isLocal = cursor.getInt(4) != 0;
+            createdAt = cursor.getLong(5);
+            colorData = cursor.getString(6);
+            trackCount = cursor.getInt(7);
+        }
+    }
+
+    /**
+     * One playlist write. Only the columns present in values are changed on an
+     * existing row; tracks replace the stored list when not null.
+     */
+    public static class Upsert {
+        final String id;
+        final ContentValues values;
+        final List<String> tracks;
+
+        public Upsert(String id, ContentValues values, List<String> tracks) {
+            this.id = id;
+            this.values = values;
+            this.tracks = tracks;
+        }
+    }
+
+    public int count() {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM playlists", null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    /** @return playlists in library order, without tracks unless requested. */
+    public List<Playlist> query(int offset, int limit, boolean withTracks) {
+        List<Playlist> playlists = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT " + PLAYLIST_COLUMNS + " FROM playlists ORDER BY position, created_at LIMIT ? OFFSET ?",
+                new String[] {String.valueOf(limit), String.valueOf(offset)})) {
+            while (cursor.moveToNext()) {
+                playlists.add(new Playlist(cursor));
+            }
+        }
+        if (withTracks) {
+            for (Playlist playlist : playlists) {
+                playlist.tracks = tracks(playlist.id, 0, Integer.MAX_VALUE);
+            }
+        }
+        return playlists;
+    }
+
+    public Playlist get(String id, boolean withTracks) {
+        Playlist playlist = null;
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT " + PLAYLIST_COLUMNS + " FROM playlists WHERE id = ?", new String[] {id})) {
+            if (cursor.moveToFirst()) {
+                playlist = new Playlist(cursor);
+            }
+        }
+        if (playlist != null && withTracks) {
+            playlist.tracks = tracks(id, 0, Integer.MAX_VALUE);
+        }
+        return playlist;
+    }
+
+    public List<String> tracks(String playlistId, int offset, int limit) {
+        List<String> tracks = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT t.uri FROM playlist_tracks p JOIN tracks t ON t.id = p.track_id "
+                    + "WHERE p.playlist_id = ? ORDER BY p.position LIMIT ? OFFSET ?",
+                new String[] {playlistId, String.valueOf(limit), String.valueOf(offset)})) {
+            while (cursor.moveToNext()) {
+                tracks.add(cursor.getString(0));
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * Looks up or stores the URIs' ids and makes them resolvable through
+     * {@link TrackRegistry}. The registry is only updated once the ids are
+     * committed, so a failed write leaves it untouched; pruning waits for both.
+     */
+    public synchronized int[] intern(List<String> uris) {
+        SQLiteDatabase db = getWritableDatabase();
+        int[] ids;
+        db.beginTransactionNonExclusive();
+        try {
+            ids = intern(db, uris);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            registry.register(ids[i], uris.get(i));
+        }
+        return ids;
+    }
+
+    /** Applies all writes in one transaction; new playlists are appended to the library order. */
+    public synchronized void upsertAll(List<Upsert> upserts) {
+        if (upserts.isEmpty()) return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            boolean replaced = false;
+            for (Upsert upsert : upserts) {
+                upsert(db, upsert);
+                replaced |= upsert.tracks != null;
+            }
+            if (replaced) pruneTracks(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Makes the library match the given order: listed playlists are upserted and
+     * positioned by index, playlists not listed are deleted.
+     */
+    public synchronized void sync(List<Upsert> upserts) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            Set<String> keep = new HashSet<>();
+            for (int i = 0; i < upserts.size(); i++) {
+                Upsert upsert = upserts.get(i);
+                upsert.values.put("position", i);
+                upsert(db, upsert);
+                keep.add(upsert.id);
+            }
+
+            List<String> removed = new ArrayList<>();
+            try (Cursor cursor = db.rawQuery("SELECT id FROM playlists", null)) {
+                while (cursor.moveToNext()) {
+                    String id = cursor.getString(0);
+                    if (!keep.contains(id)) removed.add(id);
+                }
+            }
+            delete(db, removed);
+            pruneTracks(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public synchronized void deleteAll(List<String> ids) {
+        if (ids.isEmpty()) return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            delete(db, ids);
+            pruneTracks(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public synchronized void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            db.execSQL("DELETE FROM playlist_tracks");
+            db.execSQL("DELETE FROM playlists");
+            pruneTracks(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void upsert(SQLiteDatabase db, Upsert upsert) {
+        ContentValues values = upsert.values;
+        if (upsert.tracks != null) {
+            values.put("track_count", upsert.tracks.size());
+        }
+
+        int updated = values.size() > 0
+            ? db.update("playlists", values, "id = ?", new String[] {upsert.id})
+            : exists(db, upsert.id) ? 1 : 0;
+        if (updated == 0) {
+            ContentValues insert = new ContentValues();
+            insert.put("id", upsert.id);
+            insert.put(COLUMN_CREATED_AT, System.currentTimeMillis());
+            insert.put("position", nextPosition(db));
+            insert.putAll(values);
+            db.insertWithOnConflict("playlists", null, insert, SQLiteDatabase.CONFLICT_REPLACE);
+        }
+
+        if (upsert.tracks != null) {
+            replaceTracks(db, upsert.id, upsert.tracks);
+        }
+    }
+
+    private void replaceTracks(SQLiteDatabase db, String playlistId, List<String> tracks) {
+        int[] ids = intern(db, tracks);
+        db.delete("playlist_tracks", "playlist_id = ?", new String[] {playlistId});
+        try (SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO playlist_tracks (playlist_id, position, track_id) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < ids.length; i++) {
+                insert.bindString(1, playlistId);
+                insert.bindLong(2, i);
+                insert.bindLong(3, ids[i]);
+                insert.executeInsert();
+            }
+        }
+    }
+
+    private static int[] intern(SQLiteDatabase db, List<String> uris) {
+        int[] ids = new int[uris.size()];
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO tracks (uri) VALUES (?)");
+             SQLiteStatement find = db.compileStatement("SELECT id FROM tracks WHERE uri = ?")) {
+            for (int i = 0; i < ids.length; i++) {
+                insert.bindString(1, uris.get(i));
+                long id = insert.executeInsert();
+                if (id == -1) {
+                    find.bindString(1, uris.get(i));
+                    id = find.simpleQueryForLong();
+                }
+                ids[i] = (int) id;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Drops tracks no playlist references any more. Ids the registry holds stay,
+     * since a loaded queue or a playlist not kept in the library may use them.
+     */
+    private void pruneTracks(SQLiteDatabase db) {
+        List<Integer> unused = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(
+                "SELECT id FROM tracks WHERE id NOT IN (SELECT track_id FROM playlist_tracks)", null)) {
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                if (registry.uri(id) == null) unused.add(id);
+            }
+        }
+        if (unused.isEmpty()) return;
+
+        try (SQLiteStatement delete = db.compileStatement("DELETE FROM tracks WHERE id = ?")) {
+            for (int id : unused) {
+                delete.bindLong(1, id);
+                delete.executeUpdateDelete();
+            }
+        }
+    }
+
+    private void delete(SQLiteDatabase db, List<String> ids) {
+        for (String id : ids) {
+            db.delete("playlist_tracks", "playlist_id = ?", new String[] {id});
+            db.delete("playlists", "id = ?", new String[] {id});
+        }
+    }
+
+    private boolean exists(SQLiteDatabase db, String id) {
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM playlists WHERE id = ?", new String[] {id})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    private long nextPosition(SQLiteDatabase db) {
+        try (SQLiteStatement max = db.compileStatement("SELECT COALESCE(MAX(position) + 1, 0) FROM playlists")) {
+            return max.simpleQueryForLong();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package io.github.toraburumeka.sofy;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@CapacitorPlugin(name = "PlaylistLibrary")
+public class PlaylistLibraryPlugin extends Plugin {
+    private static final String TAG = "PlaylistLibraryPlugin";
+    private static final String PREFERENCES_GROUP = "CapacitorStorage";
+    private static final String LEGACY_KEY = "custom_playlists_meta";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private PlaylistLibrary library;
+
+    @Override
+    public void load() {
+        library = PlaylistLibrary.getInstance(getContext());
+        executor.execute(this::migrateLegacyPlaylists);
+        Log.d(TAG, "PlaylistLibraryPlugin loaded");
+    }
+
+    /**
+     * Moves the playlists Capacitor Preferences kept as one JSON array into the
+     * library, then drops the key so SharedPreferences stops loading it.
+     */
+    private void migrateLegacyPlaylists() {
+        SharedPreferences prefs = getContext().getSharedPreferences(PREFERENCES_GROUP, Context.MODE_PRIVATE);
+        String json = prefs.getString(LEGACY_KEY, null);
+        if (json == null) return;
+
+        try {
+            JSONArray array = new JSONArray(json);
+            List<PlaylistLibrary.Upsert> upserts = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject record = array.optJSONObject(i);
+                if (record == null || record.optString("id", "").isEmpty()) continue;
+
+                PlaylistLibrary.Upsert upsert = toUpsert(record);
+                upsert.values.put("position", i);
+                upserts.add(upsert);
+            }
+            library.upsertAll(upserts);
+            prefs.edit().remove(LEGACY_KEY).apply();
+            Log.d(TAG, "Migrated " + upserts.size() + " playlists from Preferences");
+        } catch (Exception e) {
+            Log.w(TAG, "Playlist migration failed, keeping Preferences data: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getPlaylists(PluginCall call) {
+        int offset = Math.max(0, call.getInt("offset", 0));
+        int limit = Math.max(1, call.getInt("limit", DEFAULT_PAGE_SIZE));
+        boolean includeTracks = call.getBoolean("includeTracks", false);
+
+        executor.execute(() -> {
+            try {
+                JSArray playlists = new JSArray();
+                for (PlaylistLibrary.Playlist playlist : library.query(offset, limit, includeTracks)) {
+                    playlists.put(toJson(playlist));
+                }
+
+                JSObject ret = new JSObject();
+                ret.put("playlists", playlists);
+                ret.put("total", library.count());
+                call.resolve(ret);
+            } catch (Exception e) {
+                call.reject("Failed to read playlists: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void getPlaylist(PluginCall call) {
+        String id = call.getString("id");
+        if (id == null) {
+            call.reject("No id provided");
+            return;
+        }
+        boolean includeTracks = call.getBoolean("includeTracks", true);
+
+        executor.execute(() -> {
+            try {
+                PlaylistLibrary.Playlist playlist = library.get(id, includeTracks);
+                JSObject ret = new JSObject();
+                if (playlist != null) {
+                    ret.put("playlist", toJson(playlist));
+                }
+                call.resolve(ret);
+            } catch (Exception e) {
+                call.reject("Failed to read playlist: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void getTracks(PluginCall call) {
+        String id = call.getString("id");
+        if (id == null) {
+            call.reject("No id provided");
+            return;
+        }
+        int offset = Math.max(0, call.getInt("offset", 0));
+        int limit = Math.max(1, call.getInt("limit", Integer.MAX_VALUE));
+
+        executor.execute(() -> {
+            try {
+                JSArray tracks = new JSArray();
+                for (String uri : library.tracks(id, offset, limit)) {
+                    tracks.put(uri);
+                }
+                JSObject ret = new JSObject();
+                ret.put("tracks", tracks);
+                call.resolve(ret);
+            } catch (Exception e) {
+                call.reject("Failed to read tracks: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Inserts or updates playlists in one transaction. Only the fields present
+     * on each record are written; trackPaths, or FolderPicker files, replace
+     * that playlist's tracks.
+     */
+    @PluginMethod
+    public void upsertPlaylists(PluginCall call) {
+        List<PlaylistLibrary.Upsert> upserts = parseUpserts(call);
+        if (upserts == null) return;
+
+        executor.execute(() -> {
+            try {
+                library.upsertAll(upserts);
+                call.resolve();
+            } catch (Exception e) {
+                call.reject("Failed to save playlists: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Upserts the given playlists in this order and deletes every playlist not listed. */
+    @PluginMethod
+    public void syncPlaylists(PluginCall call) {
+        List<PlaylistLibrary.Upsert> upserts = parseUpserts(call);
+        if (upserts == null) return;
+
+        executor.execute(() -> {
+            try {
+                library.sync(upserts);
+                call.resolve();
+            } catch (Exception e) {
+                call.reject("Failed to save playlists: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void deletePlaylists(PluginCall call) {
+        JSONArray idsArray = call.getArray("ids");
+        if (idsArray == null) {
+            call.reject("No ids provided");
+            return;
+        }
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < idsArray.length(); i++) {
+            ids.add(idsArray.optString(i, ""));
+        }
+
+        executor.execute(() -> {
+            try {
+                library.deleteAll(ids);
+                call.resolve();
+            } catch (Exception e) {
+                call.reject("Failed to delete playlists: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void clear(PluginCall call) {
+        executor.execute(() -> {
+            try {
+                library.clear();
+                call.resolve();
+            } catch (Exception e) {
+                call.reject("Failed to clear playlists: " + e.getMessage());
+            }
+        });
+    }
+
+    private List<PlaylistLibrary.Upsert> parseUpserts(PluginCall call) {
+        JSONArray records = call.getArray("playlists");
+        if (records == null) {
+            call.reject("No playlists provided");
+            return null;
+        }
+
+        List<PlaylistLibrary.Upsert> upserts = new ArrayList<>(records.length());
+        for (int i = 0; i < records.length(); i++) {
+            JSONObject record = records.optJSONObject(i);
+            if (record == null || record.optString("id", "").isEmpty()) {
+                call.reject("Playlist " + i + " has no id");
+                return null;
+            }
+            upserts.add(toUpsert(record));
+        }
+        return upserts;
+    }
+
+    private static PlaylistLibrary.Upsert toUpsert(JSONObject record) {
+        ContentValues values = new ContentValues();
+        putString(values, PlaylistLibrary.COLUMN_TITLE, record, "title");
+        putString(values, PlaylistLibrary.COLUMN_COVER_URL, record, "coverUrl");
+        putString(values, PlaylistLibrary.COLUMN_TREE_URI, record, "treeUri");
+        if (record.has("isLocal")) {
+            values.put(PlaylistLibrary.COLUMN_IS_LOCAL, record.optBoolean("isLocal") ? 1 : 0);
+        }
+        if (record.has("createdAt") && !record.isNull("createdAt")) {
+            values.put(PlaylistLibrary.COLUMN_CREATED_AT, record.optLong("createdAt"));
+        }
+        if (record.has("colorData")) {
+            JSONObject colorData = record.optJSONObject("colorData");
+            if (colorData != null) {
+                values.put(PlaylistLibrary.COLUMN_COLOR_DATA, colorData.toString());
+            } else {
+                values.putNull(PlaylistLibrary.COLUMN_COLOR_DATA);
+            }
+        }
+
+        return new PlaylistLibrary.Upsert(record.optString("id", ""), values, tracksOf(record));
+    }
+
+    private static void putString(ContentValues values, String column, JSONObject record, String key) {
+        if (!record.has(key)) return;
+        if (record.isNull(key)) {
+            values.putNull(column);
+        } else {
+            values.put(column, record.optString(key));
+        }
+    }
+
+    /** @return the record's track URIs, from trackPaths or FolderPicker files, or null if it has neither. */
+    private static List<String> tracksOf(JSONObject record) {
+        JSONArray paths = record.optJSONArray("trackPaths");
+        if (paths != null) {
+            List<String> tracks = new ArrayList<>(paths.length());
+            for (int i = 0; i < paths.length(); i++) {
+                tracks.add(paths.optString(i, ""));
+            }
+            return tracks;
+        }
+
+        JSONArray files = record.optJSONArray("files");
+        if (files != null) {
+            List<String> tracks = new ArrayList<>(files.length());
+            for (int i = 0; i < files.length(); i++) {
+                JSONObject file = files.optJSONObject(i);
+                if (file != null && file.has("uri")) {
+                    tracks.add(file.optString("uri"));
+                }
+            }
+            return tracks;
+        }
+        return null;
+    }
+
+    private static JSObject toJson(PlaylistLibrary.Playlist playlist) throws JSONException {
+        JSObject json = new JSObject();
+        json.put("id", playlist.id);
+        json.put("title", playlist.title);
+        json.put("coverUrl", playlist.coverUrl);
+        json.put("treeUri", playlist.treeUri);
+        json.put("isLocal", playlist.isLocal);
+        json.put("createdAt", playlist.createdAt);
+        json.put("trackCount", playlist.trackCount);
+        json.put("colorData", playlist.colorData != null ? new JSONObject(playlist.colorData) : null);
+
+        if (playlist.tracks != null) {
+            JSArray tracks = new JSArray();
+            for (String uri : playlist.tracks) {
+                tracks.put(uri);
+            }
+            json.put("trackPaths", tracks);
+        }
+        return json;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        super.handleOnDestroy();
+        executor.shutdown();
+    }
+}
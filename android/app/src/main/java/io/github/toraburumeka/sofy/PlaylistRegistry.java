@@ -0,0 +1,115 @@
+package io.github.toraburumeka.sofy;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process store of playlists keyed by id, shared by the plugin and the
+ * playback service. Only the id travels through Intents, so large track
+ * lists are never parcelled, and a playlist JS already registered under the
+ * same revision does not have to be sent again. Tracks are held as
+ * {@link TrackRegistry} ids.
+ */
+public class PlaylistRegistry {
+    private static final int MAX_PLAYLISTS = 4;
+    private static final PlaylistRegistry INSTANCE = new PlaylistRegistry();
+
+    public static class Playlist {
+        public final String id;
+        public final String revision;
+        private final int[] trackIds;
+        private final long[] durations;
+        private final BitSet reported = new BitSet();
+
+        Playlist(String id, String revision, int[] trackIds, long[] durations) {
+            this.id = id;
+            this.revision = revision;
+            this.trackIds = trackIds;
+            this.durations = durations;
+        }
+
+        public int size() {
+            return trackIds.length;
+        }
+
+        /** @return the shared id array; callers must not modify it. */
+        public int[] trackIds() {
+            return trackIds;
+        }
+
+        /**
+         * @return how many tracks never had a duration reported. A track that was
+         * probed and came back unknown counts as reported, so it is not re-sent.
+         */
+        public int missingDurations() {
+            synchronized (durations) {
+                return durations.length - reported.cardinality();
+            }
+        }
+
+        /** @return a copy of the known durations, one per track, 0 where unknown. */
+        public long[] durations() {
+            synchronized (durations) {
+                return durations.clone();
+            }
+        }
+    }
+
+    private final Map<String, Playlist> playlists = new LinkedHashMap<String, Playlist>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Playlist> eldest) {
+            return size() > MAX_PLAYLISTS;
+        }
+    };
+
+    public static PlaylistRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized Playlist register(String id, String revision, int[] trackIds, long[] durations) {
+        long[] copy = new long[trackIds.length];
+        if (durations != null) {
+            System.arraycopy(durations, 0, copy, 0, Math.min(durations.length, copy.length));
+        }
+        Playlist playlist = new Playlist(id, revision != null ? revision : "", trackIds.clone(), copy);
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] > 0) playlist.reported.set(i);
+        }
+        playlists.put(id, playlist);
+        return playlist;
+    }
+
+    public synchronized Playlist get(String id) {
+        return playlists.get(id);
+    }
+
+    /** @return the playlist if it is registered under the given revision, otherwise null. */
+    public synchronized Playlist get(String id, String revision) {
+        Playlist playlist = playlists.get(id);
+        return playlist != null && playlist.revision.equals(revision) ? playlist : null;
+    }
+
+    /** Records durations starting at offset so the next load of this playlist starts with them. */
+    public void updateDurations(String id, int offset, long[] durations) {
+        Playlist playlist;
+        synchronized (this) {
+            playlist = playlists.get(id);
+        }
+        if (playlist == null || durations == null) return;
+
+        synchronized (playlist.durations) {
+            for (int i = 0; i < durations.length; i++) {
+                int index = offset + i;
+                if (index >= 0 && index < playlist.durations.length) {
+                    playlist.durations[index] = durations[i];
+                    playlist.reported.set(index);
+                }
+            }
+        }
+    }
+
+    public synchronized void remove(String id) {
+        playlists.remove(id);
+    }
+}
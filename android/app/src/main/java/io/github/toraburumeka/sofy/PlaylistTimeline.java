@@ -0,0 +1,85 @@
+package io.github.toraburumeka.sofy;
+
+/**
+ * Cumulative durations along a play order, kept in a Fenwick tree so that
+ * prefix sums, duration updates and position lookups are all O(log n).
+ */
+public class PlaylistTimeline {
+    private final long[] tree;
+    private final long[] values;
+    private final int[] positionOf;
+
+    /**
+     * @param order     track index at each play position
+     * @param durations duration of each track index in ms
+     */
+    public PlaylistTimeline(int[] order, long[] durations) {
+        int n = order.length;
+        tree = new long[n + 1];
+        values = new long[n];
+        positionOf = new int[n];
+
+        for (int position = 0; position < n; position++) {
+            int track = order[position];
+            positionOf[track] = position;
+            values[position] = track < durations.length ? Math.max(0, durations[track]) : 0;
+            tree[position + 1] += values[position];
+
+            int parent = position + 1 + ((position + 1) & -(position + 1));
+            if (parent <= n) {
+                tree[parent] += tree[position + 1];
+            }
+        }
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public long total() {
+        return prefix(values.length);
+    }
+
+    /** @return the summed duration of the first count play positions. */
+    public long prefix(int count) {
+        long sum = 0;
+        for (int i = Math.min(count, values.length); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    public void setDuration(int track, long duration) {
+        if (track < 0 || track >= positionOf.length) return;
+
+        int position = positionOf[track];
+        long delta = Math.max(0, duration) - values[position];
+        if (delta == 0) return;
+
+        values[position] += delta;
+        for (int i = position + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @return the play position whose span contains the given playlist time.
+     *         Times past the end map to the last position.
+     */
+    public int findPosition(long timeMs) {
+        int n = values.length;
+        if (n == 0) return -1;
+        if (total() == 0) return 0;
+
+        int position = 0;
+        long remaining = Math.max(0, timeMs);
+        for (int step = Integer.highestOneBit(n); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= n && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return Math.min(position, n - 1);
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.toraburumeka.sofy;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Shuffled play order over track indices 0..size-1. One Fisher-Yates
+ * permutation is walked by a cursor, so next, previous and peek are O(1).
+ * When a cycle ends the following one is drawn so that it does not start
+ * with the track that just played.
+ */
+public class ShuffleEngine {
+    private static final int MAGIC = 0x53484646;
+    private static final int VERSION = 1;
+
+    /** Byte offset of the cursor in the {@link #writeTo} layout, so it can be updated in place. */
+    public static final int CURSOR_OFFSET = 12;
+
+    private final Random random;
+    private int[] order;
+    private int cursor;
+    private int[] nextOrder;
+    private int cycle;
+
+    public ShuffleEngine(int size, Random random) {
+        this.random = random;
+        this.order = permutation(size, -1);
+        this.cursor = -1;
+    }
+
+    private ShuffleEngine(int[] order, int cursor, Random random) {
+        this.random = random;
+        this.order = order;
+        this.cursor = cursor;
+    }
+
+    public int size() {
+        return order.length;
+    }
+
+    /** @return the current track, or -1 before the first call to next(). */
+    public int current() {
+        return cursor >= 0 ? order[cursor] : -1;
+    }
+
+    /** @return how many tracks of the current cycle were started, including the current one. */
+    public int position() {
+        return cursor + 1;
+    }
+
+    /** @return the track at the given position of the current cycle. */
+    public int trackAt(int position) {
+        return order[position];
+    }
+
+    /** @return a copy of the current cycle's order. */
+    public int[] order() {
+        return order.clone();
+    }
+
+    /** @return a counter that changes whenever a new cycle is drawn. */
+    public int cycle() {
+        return cycle;
+    }
+
+    /** Moves the cursor to a position of the current cycle and returns its track. */
+    public int moveTo(int position) {
+        if (position < 0 || position >= order.length) return -1;
+        cursor = position;
+        return order[cursor];
+    }
+
+    /** @return the track next() will return, or -1 for an empty playlist. */
+    public int peekNext() {
+        if (order.length == 0) return -1;
+        if (cursor + 1 < order.length) return order[cursor + 1];
+
+        if (nextOrder == null) {
+            nextOrder = permutation(order.length, current());
+        }
+        return nextOrder[0];
+    }
+
+    public int next() {
+        if (order.length == 0) return -1;
+
+        if (cursor + 1 >= order.length) {
+            order = nextOrder != null ? nextOrder : permutation(order.length, current());
+            nextOrder = null;
+            cursor = -1;
+            cycle++;
+        }
+        return order[++cursor];
+    }
+
+    /** @return the previous track of this cycle, or -1 at the start of a cycle. */
+    public int previous() {
+        if (cursor <= 0) return -1;
+        return order[--cursor];
+    }
+
+    /** @return the cursor as stored at {@link #CURSOR_OFFSET}. */
+    public int cursor() {
+        return cursor;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(order.length);
+        out.writeInt(cursor);
+        for (int index : order) {
+            out.writeInt(index);
+        }
+    }
+
+    /** @return the stored engine, or null if the data is not a valid order of the given size. */
+    public static ShuffleEngine readFrom(DataInputStream in, int expectedSize, Random random) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+        int size = in.readInt();
+        int cursor = in.readInt();
+        if (size != expectedSize || cursor < -1 || cursor >= size) return null;
+
+        int[] order = new int[size];
+        boolean[] seen = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            int index = in.readInt();
+            if (index < 0 || index >= size || seen[index]) return null;
+            seen[index] = true;
+            order[i] = index;
+        }
+        return new ShuffleEngine(order, cursor, random);
+    }
+
+    private int[] permutation(int size, int avoidFirst) {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+
+        if (size > 1 && result[0] == avoidFirst) {
+            int j = 1 + random.nextInt(size - 1);
+            result[0] = result[j];
+            result[j] = avoidFirst;
+        }
+        return result;
+    }
+}
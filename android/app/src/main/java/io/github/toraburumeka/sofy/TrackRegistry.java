@@ -0,0 +1,53 @@
+package io.github.toraburumeka.sofy;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide table resolving the int track ids stored by
+ * {@link PlaylistLibrary} back to URIs, so playlists and the playback queue
+ * can hold int[] instead of repeating long content:// strings. Only tracks
+ * interned in this process are held, and the library keeps their rows, so a
+ * URI interned again gets the same id.
+ */
+public class TrackRegistry {
+    private static final TrackRegistry INSTANCE = new TrackRegistry();
+
+    private final Map<Integer, String> uris = new HashMap<>();
+
+    public static TrackRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized int size() {
+        return uris.size();
+    }
+
+    /** @return the URI of the id, or null if the id was never registered. */
+    public synchronized String uri(int id) {
+        return uris.get(id);
+    }
+
+    /** Registers a stored id. An id already registered keeps its URI. */
+    public synchronized void register(int id, String uri) {
+        if (id < 0) return;
+        uris.putIfAbsent(id, uri);
+    }
+
+    /** @return a read-only view resolving ids to URIs on access, without copying strings. */
+    public List<String> uris(int[] trackIds) {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return uri(trackIds[index]);
+            }
+
+            @Override
+            public int size() {
+                return trackIds.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ArtworkDecoderTest {
+    private static final long ONE_MB = 1024 * 1024;
+
+    @Test
+    public void sampleSize_smallImage_isNotSubsampled() {
+        assertEquals(1, ArtworkDecoder.sampleSize(300, 300, 512, ONE_MB, 4));
+    }
+
+    @Test
+    public void sampleSize_keepsLongestSideAtOrAboveTarget() {
+        assertEquals(4, ArtworkDecoder.sampleSize(3000, 3000, 512, 64 * ONE_MB, 2));
+        assertEquals(2, ArtworkDecoder.sampleSize(1024, 1024, 512, 64 * ONE_MB, 2));
+        assertEquals(1, ArtworkDecoder.sampleSize(1023, 600, 512, 64 * ONE_MB, 2));
+    }
+
+    @Test
+    public void sampleSize_growsUntilBudgetFits() {
+        int sample = ArtworkDecoder.sampleSize(3000, 3000, 512, 256 * 1024, 4);
+
+        assertEquals(16, sample);
+        assertTrue((long) (3000 / sample) * (3000 / sample) * 4 <= 256 * 1024);
+    }
+
+    @Test
+    public void sampleSize_rgb565FitsBudgetWithLessSubsampling() {
+        int argb = ArtworkDecoder.sampleSize(2048, 2048, 256, ONE_MB, 4);
+        int rgb565 = ArtworkDecoder.sampleSize(2048, 2048, 256, ONE_MB, 2);
+
+        assertTrue(rgb565 <= argb);
+    }
+
+    @Test
+    public void sampleSize_terminatesForTinyBudget() {
+        int sample = ArtworkDecoder.sampleSize(4000, 100, 512, 1, 4);
+
+        assertTrue((long) (4000 / sample) * (100 / sample) * 4 <= 1 || 4000 / sample <= 1);
+    }
+
+    @Test
+    public void isOpaque_onlyForJpeg() {
+        assertTrue(ArtworkDecoder.isOpaque("image/jpeg"));
+        assertFalse(ArtworkDecoder.isOpaque("image/png"));
+        assertFalse(ArtworkDecoder.isOpaque("image/webp"));
+        assertFalse(ArtworkDecoder.isOpaque(null));
+    }
+}
@@ -0,0 +1,213 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+public class AudioHeaderParserTest {
+
+    @Test
+    public void wav_usesDataChunkAndByteRate() throws Exception {
+        Bytes out = new Bytes();
+        out.ascii("RIFF").le32(0).ascii("WAVE");
+        out.ascii("fmt ").le32(16).le16(1).le16(2).le32(44100).le32(176400).le16(4).le16(16);
+        out.ascii("data").le32(176400 * 3).zeros(176400 * 3);
+
+        assertEquals(3000, parse(out));
+    }
+
+    @Test
+    public void flac_readsStreamInfoTotalSamples() throws Exception {
+        Bytes out = new Bytes();
+        out.ascii("fLaC");
+        out.u8(0x80).u8(0).u8(0).u8(34);
+        out.be16(4096).be16(4096).zeros(6);
+        long samples = 44100L * 5;
+        out.u8(44100 >> 12).u8((44100 >> 4) & 0xFF).u8(((44100 & 0x0F) << 4) | (1 << 1));
+        out.u8((int) ((samples >> 32) & 0x0F)).be32(samples & 0xFFFFFFFFL);
+        out.zeros(16 + 100);
+
+        assertEquals(5000, parse(out));
+    }
+
+    @Test
+    public void mp3_readsXingFrameCount() throws Exception {
+        Bytes out = new Bytes();
+        byte[] first = mp3Frame();
+        writeAscii(first, 36, "Xing");
+        writeBe32(first, 40, 0x1);
+        writeBe32(first, 44, 1000);
+        out.bytes(first);
+        for (int i = 0; i < 10; i++) out.bytes(mp3Frame());
+
+        assertEquals(1000L * 1152 * 1000 / 44100, parse(out));
+    }
+
+    @Test
+    public void mp3_ignoresLoneFrameSyncInUnknownData() throws Exception {
+        Bytes out = new Bytes();
+        out.ascii("JUNK").zeros(100);
+        out.bytes(mp3Frame());
+        out.zeros(2000);
+
+        assertEquals(AudioHeaderParser.UNKNOWN, parse(out));
+    }
+
+    @Test
+    public void mp3_confirmsFrameBeyondSyncWindow() throws Exception {
+        Bytes out = new Bytes();
+        out.zeros(64 * 1024 - 200);
+        for (int i = 0; i < 10; i++) out.bytes(mp3Frame());
+
+        assertTrue(parse(out) > 0);
+    }
+
+    @Test
+    public void mp3_readsVbriFrameCount() throws Exception {
+        Bytes out = new Bytes();
+        byte[] first = mp3Frame();
+        writeAscii(first, 36, "VBRI");
+        writeBe32(first, 50, 500);
+        out.bytes(first);
+        for (int i = 0; i < 10; i++) out.bytes(mp3Frame());
+
+        assertEquals(500L * 1152 * 1000 / 44100, parse(out));
+    }
+
+    @Test
+    public void mp3_estimatesCbrAfterId3Tag() throws Exception {
+        Bytes out = new Bytes();
+        out.ascii("ID3").u8(4).u8(0).u8(0).u8(0).u8(0).u8(0).u8(100).zeros(100);
+        for (int i = 0; i < 100; i++) out.bytes(mp3Frame());
+
+        assertEquals(100L * 417 * 8 / 128, parse(out));
+    }
+
+    @Test
+    public void mp4_readsMvhdAfterMdat() throws Exception {
+        Bytes out = new Bytes();
+        out.be32(16).ascii("ftyp").ascii("M4A ").be32(0);
+        out.be32(8 + 1000).ascii("mdat").zeros(1000);
+        out.be32(8 + 108).ascii("moov");
+        out.be32(108).ascii("mvhd").u8(0).zeros(3).be32(0).be32(0).be32(1000).be32(12345).zeros(80);
+
+        assertEquals(12345, parse(out));
+    }
+
+    @Test
+    public void oggVorbis_usesLastGranulePosition() throws Exception {
+        Bytes out = new Bytes();
+        Bytes ident = new Bytes();
+        ident.u8(1).ascii("vorbis").le32(0).u8(2).le32(44100).zeros(13);
+        oggPage(out, 0, ident.toArray());
+        oggPage(out, 22050, new byte[200]);
+        oggPage(out, 44100L * 7, new byte[200]);
+
+        assertEquals(7000, parse(out));
+    }
+
+    @Test
+    public void opus_subtractsPreSkip() throws Exception {
+        Bytes out = new Bytes();
+        Bytes head = new Bytes();
+        head.ascii("OpusHead").u8(1).u8(2).le16(312).le32(48000).le16(0).u8(0);
+        oggPage(out, 0, head.toArray());
+        oggPage(out, 48000L * 2 + 312, new byte[100]);
+
+        assertEquals(2000, parse(out));
+    }
+
+    @Test
+    public void adts_countsFrames() throws Exception {
+        Bytes out = new Bytes();
+        for (int i = 0; i < 100; i++) {
+            byte[] frame = new byte[200];
+            frame[0] = (byte) 0xFF;
+            frame[1] = (byte) 0xF1;
+            frame[2] = (byte) ((1 << 6) | (4 << 2));
+            frame[3] = (byte) ((2 << 6) | ((200 >> 11) & 0x03));
+            frame[4] = (byte) ((200 >> 3) & 0xFF);
+            frame[5] = (byte) (((200 & 0x07) << 5) | 0x1F);
+            frame[6] = (byte) 0xFC;
+            out.bytes(frame);
+        }
+
+        assertEquals(100L * 1024 * 1000 / 44100, parse(out));
+    }
+
+    @Test
+    public void unknownFormat_returnsUnknown() throws Exception {
+        Bytes out = new Bytes();
+        out.ascii("[00:01.00] just some lyrics, not audio at all\n");
+
+        assertEquals(AudioHeaderParser.UNKNOWN, parse(out));
+    }
+
+    private static byte[] mp3Frame() {
+        byte[] frame = new byte[417];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xFB;
+        frame[2] = (byte) 0x90;
+        frame[3] = (byte) 0x00;
+        return frame;
+    }
+
+    private static void oggPage(Bytes out, long granule, byte[] packet) {
+        out.ascii("OggS").u8(0).u8(granule == 0 ? 2 : 0);
+        out.le32(granule & 0xFFFFFFFFL).le32(granule >>> 32);
+        out.le32(0x1234).le32(0).le32(0);
+        int segments = packet.length / 255 + 1;
+        out.u8(segments);
+        for (int i = 0; i < segments - 1; i++) out.u8(255);
+        out.u8(packet.length % 255);
+        out.bytes(packet);
+    }
+
+    private static void writeAscii(byte[] b, int offset, String s) {
+        byte[] src = s.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(src, 0, b, offset, src.length);
+    }
+
+    private static void writeBe32(byte[] b, int offset, long v) {
+        b[offset] = (byte) (v >> 24);
+        b[offset + 1] = (byte) (v >> 16);
+        b[offset + 2] = (byte) (v >> 8);
+        b[offset + 3] = (byte) v;
+    }
+
+    private static long parse(Bytes data) throws IOException {
+        File file = File.createTempFile("sample", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream os = new FileOutputStream(file)) {
+            os.write(data.toArray());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return AudioHeaderParser.parseDurationMs(channel);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static final class Bytes {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Bytes u8(int v) { out.write(v); return this; }
+        Bytes le16(int v) { return u8(v & 0xFF).u8((v >> 8) & 0xFF); }
+        Bytes le32(long v) { return le16((int) (v & 0xFFFF)).le16((int) ((v >> 16) & 0xFFFF)); }
+        Bytes be16(int v) { return u8((v >> 8) & 0xFF).u8(v & 0xFF); }
+        Bytes be32(long v) { return be16((int) ((v >> 16) & 0xFFFF)).be16((int) (v & 0xFFFF)); }
+        Bytes zeros(int n) { out.write(new byte[n], 0, n); return this; }
+        Bytes bytes(byte[] b) { out.write(b, 0, b.length); return this; }
+        Bytes ascii(String s) { return bytes(s.getBytes(StandardCharsets.US_ASCII)); }
+        byte[] toArray() { return out.toByteArray(); }
+    }
+}
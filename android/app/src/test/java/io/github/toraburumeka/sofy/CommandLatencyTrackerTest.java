@@ -0,0 +1,55 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+public class CommandLatencyTrackerTest {
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void snapshot_reportsCountMeanMaxAndLast() {
+        CommandLatencyTracker tracker = new CommandLatencyTracker();
+        tracker.record("play", 2 * MS);
+        tracker.record("play", 4 * MS);
+        tracker.record("pause", MS);
+
+        Map<String, CommandLatencyTracker.Stats> stats = tracker.snapshot();
+        CommandLatencyTracker.Stats play = stats.get("play");
+
+        assertEquals(2, stats.size());
+        assertEquals(2, play.count);
+        assertEquals(3.0, play.meanMs, 1e-9);
+        assertEquals(4.0, play.maxMs, 1e-9);
+        assertEquals(4.0, play.lastMs, 1e-9);
+        assertEquals(1, stats.get("pause").count);
+    }
+
+    @Test
+    public void p95_usesRecentWindow() {
+        CommandLatencyTracker tracker = new CommandLatencyTracker();
+        for (int i = 0; i < 100; i++) {
+            tracker.record("next", 500 * MS);
+        }
+        for (int i = 1; i <= 64; i++) {
+            tracker.record("next", i * MS);
+        }
+
+        CommandLatencyTracker.Stats next = tracker.snapshot().get("next");
+
+        assertEquals(164, next.count);
+        assertEquals(61.0, next.p95Ms, 1e-9);
+        assertEquals(500.0, next.maxMs, 1e-9);
+    }
+
+    @Test
+    public void reset_clearsAllCommands() {
+        CommandLatencyTracker tracker = new CommandLatencyTracker();
+        tracker.record("stop", MS);
+        tracker.reset();
+
+        assertTrue(tracker.snapshot().isEmpty());
+    }
+}
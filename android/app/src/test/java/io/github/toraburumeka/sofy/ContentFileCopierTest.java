@@ -0,0 +1,109 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ContentFileCopierTest {
+    private File dir;
+    private File sources;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("files").toFile();
+        sources = Files.createTempDirectory("sources").toFile();
+    }
+
+    @Test
+    public void copy_writesDestinationWithoutLeavingTempFiles() throws Exception {
+        ContentFileCopier.Result result = copyFile(source("a.png", "cover bytes"), "cover_1.png");
+
+        assertFalse(result.deduplicated);
+        assertEquals(new File(dir, "cover_1.png"), result.file);
+        assertEquals("cover bytes", read(result.file));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void copy_replacesExistingDestination() throws Exception {
+        copyFile(source("a.png", "old content"), "cover.png");
+        ContentFileCopier.Result result = copyFile(source("b.png", "new, longer content"), "cover.png");
+
+        assertFalse(result.deduplicated);
+        assertEquals("new, longer content", read(result.file));
+    }
+
+    @Test
+    public void copy_reusesFileWithSameContent() throws Exception {
+        copyFile(source("a.png", "same bytes"), "cover_1.png");
+        ContentFileCopier.Result result = copyFile(source("b.png", "same bytes"), "cover_2.png");
+
+        assertTrue(result.deduplicated);
+        assertEquals(new File(dir, "cover_1.png"), result.file);
+        assertFalse(new File(dir, "cover_2.png").exists());
+    }
+
+    @Test
+    public void copy_keepsSameSizeFilesWithDifferentContent() throws Exception {
+        copyFile(source("a.png", "aaaa"), "cover_1.png");
+        ContentFileCopier.Result result = copyFile(source("b.png", "bbbb"), "cover_2.png");
+
+        assertFalse(result.deduplicated);
+        assertEquals("bbbb", read(new File(dir, "cover_2.png")));
+        assertEquals("aaaa", read(new File(dir, "cover_1.png")));
+    }
+
+    @Test
+    public void copy_withUnknownSize_dedupesAfterTransfer() throws Exception {
+        copyFile(source("a.png", "streamed"), "cover_1.png");
+        ContentFileCopier copier = new ContentFileCopier(dir);
+        ContentFileCopier.Result result = copier.copy(
+            Channels.newChannel(new ByteArrayInputStream("streamed".getBytes(StandardCharsets.UTF_8))),
+            -1, "cover_2.png");
+
+        assertTrue(result.deduplicated);
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void copy_failsOnShortSourceAndKeepsOldDestination() throws Exception {
+        copyFile(source("a.png", "intact"), "cover.png");
+        File shortSource = source("b.png", "abc");
+        ContentFileCopier copier = new ContentFileCopier(dir);
+
+        try (FileChannel channel = new FileInputStream(shortSource).getChannel()) {
+            copier.copy(channel, 100, "cover.png");
+            fail("Expected short read");
+        } catch (IOException expected) {
+        }
+
+        assertEquals("intact", read(new File(dir, "cover.png")));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    private ContentFileCopier.Result copyFile(File source, String destName) throws IOException {
+        try (FileChannel channel = new FileInputStream(source).getChannel()) {
+            return new ContentFileCopier(dir).copy(channel, channel.size(), destName);
+        }
+    }
+
+    private File source(String name, String content) throws IOException {
+        File file = new File(sources, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class FolderSnapshotStoreTest {
+
+    @Test
+    public void diff_withoutPreviousSnapshot_reportsEverythingAdded() {
+        FolderSnapshotStore.Snapshot current = snapshot(
+            record("a", "one.mp3", 10, 1), record("b", "two.mp3", 20, 2));
+
+        FolderSnapshotStore.Diff diff = FolderSnapshotStore.diff(null, current);
+
+        assertEquals(2, diff.added.size());
+        assertTrue(diff.removed.isEmpty());
+        assertTrue(diff.changed.isEmpty());
+        assertEquals(0, diff.unchanged);
+    }
+
+    @Test
+    public void diff_classifiesAddedRemovedChangedAndUnchanged() {
+        FolderSnapshotStore.Snapshot previous = snapshot(
+            record("a", "one.mp3", 10, 1), record("b", "two.mp3", 20, 2), record("c", "three.mp3", 30, 3));
+        FolderSnapshotStore.Snapshot current = snapshot(
+            record("a", "one.mp3", 10, 1), record("b", "two.mp3", 25, 2), record("d", "four.mp3", 40, 4));
+
+        FolderSnapshotStore.Diff diff = FolderSnapshotStore.diff(previous, current);
+
+        assertEquals("d", diff.added.get(0).documentId);
+        assertEquals("c", diff.removed.get(0).documentId);
+        assertEquals("b", diff.changed.get(0).documentId);
+        assertEquals(1, diff.unchanged);
+        assertFalse(diff.isEmpty());
+    }
+
+    @Test
+    public void diff_ofIdenticalSnapshots_isEmpty() {
+        FolderSnapshotStore.Diff diff = FolderSnapshotStore.diff(
+            snapshot(record("a", "one.mp3", 10, 1)), snapshot(record("a", "one.mp3", 10, 1)));
+
+        assertTrue(diff.isEmpty());
+        assertEquals(1, diff.unchanged);
+    }
+
+    @Test
+    public void saveAndLoad_roundTripsRecordsAndOptions() throws Exception {
+        File dir = Files.createTempDirectory("snapshots").toFile();
+        FolderSnapshotStore store = new FolderSnapshotStore(dir);
+        FolderSnapshotStore.Snapshot snapshot = new FolderSnapshotStore.Snapshot(true, 3, 500);
+        snapshot.add(new FolderSnapshotStore.Record("doc:1", "Disc 1/01 Intro.flac", "audio/flac", 1234, 99));
+        snapshot.add(new FolderSnapshotStore.Record("doc:2", "cover.jpg", null, 55, 100));
+
+        store.save("content://tree/music", snapshot);
+        FolderSnapshotStore.Snapshot loaded = store.load("content://tree/music");
+
+        assertNotNull(loaded);
+        assertTrue(loaded.recursive);
+        assertEquals(3, loaded.maxDepth);
+        assertEquals(500, loaded.maxFiles);
+        assertEquals(2, loaded.records.size());
+        FolderSnapshotStore.Record first = loaded.records.get("doc:1");
+        assertEquals("01 Intro.flac", first.name());
+        assertEquals("audio/flac", first.mimeType);
+        assertEquals(1234, first.size);
+        assertEquals(99, first.lastModified);
+        assertNull(store.load("content://tree/other"));
+
+        store.delete("content://tree/music");
+        assertNull(store.load("content://tree/music"));
+    }
+
+    private static FolderSnapshotStore.Snapshot snapshot(FolderSnapshotStore.Record... records) {
+        FolderSnapshotStore.Snapshot snapshot = new FolderSnapshotStore.Snapshot(false, 8, 50000);
+        for (FolderSnapshotStore.Record record : records) {
+            snapshot.add(record);
+        }
+        return snapshot;
+    }
+
+    private static FolderSnapshotStore.Record record(String id, String path, long size, long modified) {
+        return new FolderSnapshotStore.Record(id, path, "audio/mpeg", size, modified);
+    }
+}
@@ -0,0 +1,199 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GainRampTest {
+    private static final int RATE = 1000;
+
+    private static ByteBuffer pcm16(int frames, int channels, short value) {
+        ByteBuffer buffer = ByteBuffer.allocate(frames * channels * 2).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < frames * channels; i++) {
+            buffer.putShort(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static short[] run16(GainRamp ramp, ByteBuffer input) {
+        ByteBuffer output = ByteBuffer.allocate(input.remaining()).order(ByteOrder.nativeOrder());
+        ramp.applyPcm16(input, output);
+        output.flip();
+        short[] samples = new short[output.remaining() / 2];
+        output.asShortBuffer().get(samples);
+        return samples;
+    }
+
+    @Test
+    public void unityGain_passesSamplesThrough() {
+        GainRamp ramp = new GainRamp();
+        ramp.configure(RATE, 2);
+
+        short[] out = run16(ramp, pcm16(4, 2, (short) 12345));
+
+        assertEquals(8, out.length);
+        for (short sample : out) assertEquals(12345, sample);
+    }
+
+    @Test
+    public void linearRamp_movesPerFrameAndAppliesToAllChannels() {
+        GainRamp ramp = new GainRamp();
+        ramp.configure(RATE, 2);
+        ramp.setGain(0f);
+        ramp.rampTo(1f, 10, GainRamp.Curve.LINEAR, null);
+
+        short[] out = run16(ramp, pcm16(10, 2, (short) 10000));
+
+        for (int frame = 0; frame < 10; frame++) {
+            assertEquals((frame + 1) * 1000, out[frame * 2]);
+            assertEquals(out[frame * 2], out[frame * 2 + 1]);
+        }
+        assertFalse(ramp.isRamping());
+        assertEquals(1f, ramp.gain(), 0f);
+    }
+
+    @Test
+    public void equalPowerFadeOut_staysAboveLinear() {
+        GainRamp linear = new GainRamp();
+        GainRamp equalPower = new GainRamp();
+        linear.configure(RATE, 1);
+        equalPower.configure(RATE, 1);
+        linear.rampTo(0f, 100, GainRamp.Curve.LINEAR, null);
+        equalPower.rampTo(0f, 100, GainRamp.Curve.EQUAL_POWER, null);
+
+        short[] a = run16(linear, pcm16(100, 1, Short.MAX_VALUE));
+        short[] b = run16(equalPower, pcm16(100, 1, Short.MAX_VALUE));
+
+        assertTrue(b[49] > a[49]);
+        assertEquals(0, a[99]);
+        assertEquals(0, b[99]);
+    }
+
+    @Test
+    public void onFinished_firesOnceWhenRampDrainsAcrossBuffers() {
+        GainRamp ramp = new GainRamp();
+        ramp.configure(RATE, 1);
+        AtomicInteger calls = new AtomicInteger();
+        ramp.rampTo(0f, 20, GainRamp.Curve.EQUAL_POWER, calls::incrementAndGet);
+
+        run16(ramp, pcm16(15, 1, (short) 100));
+        assertEquals(0, calls.get());
+
+        run16(ramp, pcm16(15, 1, (short) 100));
+        run16(ramp, pcm16(15, 1, (short) 100));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void rampBeforeConfigure_startsOnceFormatIsKnown() {
+        GainRamp ramp = new GainRamp();
+        AtomicInteger calls = new AtomicInteger();
+        ramp.setGain(0f);
+
+        ramp.rampTo(1f, 10, GainRamp.Curve.LINEAR, calls::incrementAndGet);
+        assertTrue(ramp.isRamping());
+        assertEquals(0f, ramp.gain(), 0f);
+
+        ramp.configure(1000, 1);
+        run16(ramp, pcm16(5, 1, (short) 100));
+        assertEquals(0, calls.get());
+        assertEquals(0.5f, ramp.gain(), 1e-6f);
+
+        run16(ramp, pcm16(5, 1, (short) 100));
+        assertEquals(1, calls.get());
+        assertEquals(1f, ramp.gain(), 0f);
+    }
+
+    @Test
+    public void emptyRampBeforeConfigure_completesImmediately() {
+        GainRamp ramp = new GainRamp();
+        AtomicInteger calls = new AtomicInteger();
+
+        ramp.rampTo(0.5f, 0, GainRamp.Curve.LINEAR, calls::incrementAndGet);
+
+        assertEquals(1, calls.get());
+        assertEquals(0.5f, ramp.gain(), 0f);
+    }
+
+    @Test
+    public void setGain_dropsPendingCallback() {
+        GainRamp ramp = new GainRamp();
+        ramp.configure(RATE, 1);
+        AtomicInteger calls = new AtomicInteger();
+        ramp.rampTo(0f, 10, GainRamp.Curve.LINEAR, calls::incrementAndGet);
+
+        ramp.setGain(0f);
+        short[] out = run16(ramp, pcm16(20, 1, (short) 100));
+
+        assertEquals(0, calls.get());
+        assertEquals(0, out[19]);
+    }
+
+    @Test
+    public void playedOut_waitsForPlayoutPastLastRampFrame() {
+        GainRamp ramp = new GainRamp();
+        ramp.configure(RATE, 1);
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger played = new AtomicInteger();
+        ramp.rampTo(0f, 10, GainRamp.Curve.LINEAR, processed::incrementAndGet, played::incrementAndGet);
+
+        // 20 frames at 1 kHz from 5 s: the ramp's last frame ends at 5.010 s.
+        ramp.markInput(5_000_000L);
+        run16(ramp, pcm16(20, 1, (short) 100));
+        assertEquals(1, processed.get());
+        assertEquals(0, played.get());
+
+        ramp.onPlayout(5_009_000L);
+        assertEquals(0, played.get());
+        ramp.onPlayout(5_010_000L);
+        ramp.onPlayout(5_020_000L);
+        assertEquals(1, played.get());
+    }
+
+    @Test
+    public void playedOut_runsWhenProcessedWithoutInputTimestamps() {
+        GainRamp ramp = new GainRamp();
+        ramp.configure(RATE, 1);
+        AtomicInteger played = new AtomicInteger();
+        ramp.rampTo(0f, 10, GainRamp.Curve.LINEAR, null, played::incrementAndGet);
+
+        run16(ramp, pcm16(10, 1, (short) 100));
+
+        assertEquals(1, played.get());
+    }
+
+    @Test
+    public void playedOut_runsOnFlush() {
+        GainRamp ramp = new GainRamp();
+        ramp.configure(RATE, 1);
+        AtomicInteger played = new AtomicInteger();
+        ramp.rampTo(0f, 10, GainRamp.Curve.LINEAR, null, played::incrementAndGet);
+        ramp.markInput(0);
+        run16(ramp, pcm16(10, 1, (short) 100));
+
+        ramp.configure(RATE, 1);
+
+        assertEquals(1, played.get());
+    }
+
+    @Test
+    public void applyFloat_scalesSamples() {
+        GainRamp ramp = new GainRamp();
+        ramp.configure(RATE, 1);
+        ramp.setGain(0.25f);
+        ByteBuffer input = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+        input.putFloat(1f).putFloat(-0.5f).flip();
+        ByteBuffer output = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+
+        ramp.applyFloat(input, output);
+        output.flip();
+
+        assertEquals(0.25f, output.getFloat(), 1e-6f);
+        assertEquals(-0.125f, output.getFloat(), 1e-6f);
+    }
+}
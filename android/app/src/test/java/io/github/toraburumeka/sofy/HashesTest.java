@@ -0,0 +1,22 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HashesTest {
+
+    @Test
+    public void sha1Hex_matchesKnownDigest() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", Hashes.sha1Hex("abc"));
+    }
+
+    @Test
+    public void sha1Hex_isStableAndDistinct() {
+        String uri = "content://com.android.externalstorage.documents/tree/primary%3AMusic";
+
+        assertEquals(Hashes.sha1Hex(uri), Hashes.sha1Hex(uri));
+        assertNotEquals(Hashes.sha1Hex(uri), Hashes.sha1Hex(uri + "/"));
+        assertEquals(40, Hashes.sha1Hex("").length());
+    }
+}
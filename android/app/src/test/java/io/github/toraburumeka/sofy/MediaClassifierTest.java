@@ -0,0 +1,70 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MediaClassifierTest {
+
+    @Test
+    public void defaults_classifyByExtensionIgnoringCase() {
+        MediaClassifier classifier = new MediaClassifier(null, null, null);
+
+        assertTrue(classifier.isAudio("01 Intro.FLAC", null));
+        assertTrue(classifier.isAudio("song.mp3", "application/octet-stream"));
+        assertFalse(classifier.isAudio("notes.txt", "text/plain"));
+        assertFalse(classifier.isAudio("no_extension", null));
+        assertTrue(classifier.isImage("Cover.JPG"));
+        assertFalse(classifier.isImage("song.mp3"));
+    }
+
+    @Test
+    public void customLists_replaceDefaultsAndAcceptLeadingDots() {
+        MediaClassifier classifier = new MediaClassifier(
+            Arrays.asList(".opus"), Collections.<String>emptyList(), Arrays.asList(".GIF"));
+
+        assertTrue(classifier.isAudio("track.opus", null));
+        assertFalse(classifier.isAudio("track.mp3", null));
+        assertTrue(classifier.isImage("art.gif"));
+        assertFalse(classifier.isImage("art.png"));
+    }
+
+    @Test
+    public void mimePrefixes_matchFilesWithUnknownExtensions() {
+        MediaClassifier classifier = new MediaClassifier(null, Arrays.asList("audio/"), null);
+
+        assertTrue(classifier.isAudio("track.opus", "Audio/Opus"));
+        assertFalse(classifier.isAudio("clip.mkv", "video/x-matroska"));
+        assertFalse(classifier.isAudio("track.opus", null));
+    }
+
+    @Test
+    public void cover_nameMatchBeatsGenericImage() {
+        MediaClassifier classifier = new MediaClassifier(null, null, null);
+
+        assertTrue(classifier.isBetterCover("Folder.jpg", 10, "IMG_0001.jpg", 5000));
+        assertTrue(classifier.isBetterCover("cover.png", 10, "front_scan.png", 10));
+        assertTrue(classifier.isBetterCover("album_art.png", 10, "photo.png", 10));
+        assertFalse(classifier.isBetterCover("photo.png", 5000, "cover.png", 10));
+    }
+
+    @Test
+    public void cover_shallowerPathBeatsDeeperOne() {
+        MediaClassifier classifier = new MediaClassifier(null, null, null);
+
+        assertTrue(classifier.isBetterCover("cover.jpg", 10, "Disc 1/cover.jpg", 5000));
+        assertFalse(classifier.isBetterCover("Disc 1/Scans/cover.jpg", 5000, "Disc 1/cover.jpg", 10));
+    }
+
+    @Test
+    public void cover_sizeBreaksTies() {
+        MediaClassifier classifier = new MediaClassifier(null, null, null);
+
+        assertTrue(classifier.isBetterCover("a/cover.png", 200, "b/cover.jpg", 100));
+        assertFalse(classifier.isBetterCover("a/cover.png", 100, "b/cover.jpg", 100));
+        assertTrue(classifier.isBetterCover("anything.png", 1, null, 0));
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class PlaybackQueueTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("queue").toFile();
+    }
+
+    @Test
+    public void saveAndLoad_roundTripsQueue() throws IOException {
+        File file = new File(dir, "playback_queue.bin");
+        new PlaybackQueue("p1", "r1", "Mix", "content://cover",
+            Arrays.asList("content://a", "content://b"), new long[] { 1000, 2000 }, 3000).save(file);
+
+        PlaybackQueue restored = PlaybackQueue.load(file);
+
+        assertNotNull(restored);
+        assertEquals("p1", restored.playlistId);
+        assertEquals("r1", restored.revision);
+        assertEquals("Mix", restored.title);
+        assertEquals("content://cover", restored.cover);
+        assertEquals(Arrays.asList("content://a", "content://b"), restored.tracks);
+        assertArrayEquals(new long[] { 1000, 2000 }, restored.durations);
+        assertEquals(3000, restored.totalDuration);
+    }
+
+    @Test
+    public void load_rejectsEmptyOrTruncatedQueue() throws IOException {
+        File empty = new File(dir, "empty.bin");
+        new PlaybackQueue("p1", "r1", "", "", Arrays.asList(), new long[0], 0).save(empty);
+        File truncated = new File(dir, "truncated.bin");
+        new PlaybackQueue("p1", "r1", "", "", Arrays.asList("a"), new long[1], 0).save(truncated);
+        byte[] bytes = Files.readAllBytes(truncated.toPath());
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertNull(PlaybackQueue.load(empty));
+        assertNull(PlaybackQueue.load(truncated));
+        assertNull(PlaybackQueue.load(new File(dir, "missing.bin")));
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class PlaybackSnapshotTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshot").toFile();
+    }
+
+    private static PlaybackQueue queue(String revision) {
+        return new PlaybackQueue("p1", revision, "Mix", "", Arrays.asList("a", "b", "c"), new long[3], 0);
+    }
+
+    @Test
+    public void saveAndLoad_roundTripsState() throws IOException {
+        File file = new File(dir, "playback.bin");
+
+        new PlaybackSnapshot("p1", "r1", 2, 1234, 1, true).save(file);
+        PlaybackSnapshot restored = PlaybackSnapshot.load(file);
+
+        assertNotNull(restored);
+        assertEquals("p1", restored.playlistId);
+        assertEquals("r1", restored.revision);
+        assertEquals(2, restored.currentTrackIndex);
+        assertEquals(1234, restored.positionMs);
+        assertEquals(1, restored.shuffleCursor);
+        assertTrue(restored.playing);
+        assertFalse(new File(dir, "playback.bin.tmp").exists());
+        assertTrue(file.length() < 64);
+    }
+
+    @Test
+    public void load_rejectsOtherBinaryFormats() throws IOException {
+        File queueFile = new File(dir, "queue.bin");
+        queue("r1").save(queueFile);
+        new FolderSnapshotStore(dir).save("content://tree/music", new FolderSnapshotStore.Snapshot(false, 8, 100));
+
+        assertNull(PlaybackSnapshot.load(queueFile));
+        assertNull(PlaybackSnapshot.load(
+            new File(new File(dir, "folder_snapshots"), Hashes.sha1Hex("content://tree/music") + ".bin")));
+    }
+
+    @Test
+    public void matches_requiresSameQueueRevisionAndIndexInRange() {
+        PlaybackSnapshot snapshot = new PlaybackSnapshot("p1", "r1", 2, 0, 2, false);
+
+        assertTrue(snapshot.matches(queue("r1")));
+        assertFalse(snapshot.matches(queue("r2")));
+        assertFalse(snapshot.matches(null));
+        assertFalse(new PlaybackSnapshot("p1", "r1", 3, 0, 0, false).matches(queue("r1")));
+    }
+
+    @Test
+    public void load_rejectsMissingOrCorruptFiles() throws IOException {
+        File missing = new File(dir, "missing.bin");
+        File corrupt = new File(dir, "corrupt.bin");
+        try (FileOutputStream out = new FileOutputStream(corrupt)) {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+        }
+
+        assertNull(PlaybackSnapshot.load(missing));
+        assertNull(PlaybackSnapshot.load(corrupt));
+    }
+
+    @Test
+    public void load_rejectsTruncatedFile() throws IOException {
+        File file = new File(dir, "playback.bin");
+        new PlaybackSnapshot("p1", "r1", 0, 0, 0, false).save(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 2));
+
+        assertNull(PlaybackSnapshot.load(file));
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PlaylistRegistryTest {
+
+    @Test
+    public void get_matchesOnlyTheRegisteredRevision() {
+        PlaylistRegistry registry = new PlaylistRegistry();
+        registry.register("p1", "r1", new int[] { 1, 2 }, null);
+
+        assertNotNull(registry.get("p1", "r1"));
+        assertNull(registry.get("p1", "r2"));
+        assertNull(registry.get("p2", "r1"));
+    }
+
+    @Test
+    public void register_copiesTrackIdsAndPadsDurations() {
+        PlaylistRegistry registry = new PlaylistRegistry();
+        int[] trackIds = { 1, 2, 3 };
+
+        PlaylistRegistry.Playlist playlist = registry.register("p1", "r1", trackIds, new long[] { 5 });
+        trackIds[0] = 9;
+
+        assertEquals(3, playlist.size());
+        assertArrayEquals(new int[] { 1, 2, 3 }, playlist.trackIds());
+        assertArrayEquals(new long[] { 5, 0, 0 }, playlist.durations());
+    }
+
+    @Test
+    public void updateDurations_writesInsideBoundsOnly() {
+        PlaylistRegistry registry = new PlaylistRegistry();
+        registry.register("p1", "r1", new int[] { 1, 2, 3 }, null);
+
+        registry.updateDurations("p1", 1, new long[] { 200, 300, 400 });
+        registry.updateDurations("missing", 0, new long[] { 1 });
+
+        assertArrayEquals(new long[] { 0, 200, 300 }, registry.get("p1").durations());
+    }
+
+    @Test
+    public void missingDurations_countsTracksNeverReported() {
+        PlaylistRegistry registry = new PlaylistRegistry();
+        PlaylistRegistry.Playlist playlist = registry.register("p1", "r1", new int[] { 1, 2, 3 }, new long[] { 5 });
+        assertEquals(2, playlist.missingDurations());
+
+        registry.updateDurations("p1", 1, new long[] { 200, 0 });
+
+        assertEquals(0, playlist.missingDurations());
+    }
+
+    @Test
+    public void register_evictsLeastRecentlyUsed() {
+        PlaylistRegistry registry = new PlaylistRegistry();
+        for (int i = 0; i < 4; i++) {
+            registry.register("p" + i, "r", new int[] { 1 }, null);
+        }
+        registry.get("p0");
+
+        registry.register("p4", "r", new int[] { 1 }, null);
+
+        assertNotNull(registry.get("p0"));
+        assertNull(registry.get("p1"));
+        assertNotNull(registry.get("p4"));
+    }
+}
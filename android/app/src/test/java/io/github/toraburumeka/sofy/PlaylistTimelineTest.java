@@ -0,0 +1,83 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PlaylistTimelineTest {
+
+    @Test
+    public void prefix_sumsDurationsInPlayOrder() {
+        PlaylistTimeline timeline = new PlaylistTimeline(new int[] {2, 0, 1}, new long[] {100, 200, 300});
+
+        assertEquals(0, timeline.prefix(0));
+        assertEquals(300, timeline.prefix(1));
+        assertEquals(400, timeline.prefix(2));
+        assertEquals(600, timeline.total());
+    }
+
+    @Test
+    public void findPosition_returnsPositionContainingTime() {
+        PlaylistTimeline timeline = new PlaylistTimeline(new int[] {2, 0, 1}, new long[] {100, 200, 300});
+
+        assertEquals(0, timeline.findPosition(0));
+        assertEquals(0, timeline.findPosition(299));
+        assertEquals(1, timeline.findPosition(300));
+        assertEquals(2, timeline.findPosition(400));
+        assertEquals(2, timeline.findPosition(599));
+        assertEquals(2, timeline.findPosition(10_000));
+    }
+
+    @Test
+    public void findPosition_skipsUnknownDurations() {
+        PlaylistTimeline timeline = new PlaylistTimeline(new int[] {0, 1, 2}, new long[] {100, 0, 100});
+
+        assertEquals(2, timeline.findPosition(100));
+    }
+
+    @Test
+    public void findPosition_withNoDurations_startsAtFirstPosition() {
+        PlaylistTimeline timeline = new PlaylistTimeline(new int[] {1, 0}, new long[2]);
+
+        assertEquals(0, timeline.findPosition(5000));
+    }
+
+    @Test
+    public void setDuration_updatesPrefixesIncrementally() {
+        PlaylistTimeline timeline = new PlaylistTimeline(new int[] {1, 0, 2}, new long[3]);
+
+        timeline.setDuration(0, 500);
+        timeline.setDuration(1, 250);
+
+        assertEquals(250, timeline.prefix(1));
+        assertEquals(750, timeline.prefix(2));
+        assertEquals(1, timeline.findPosition(250));
+    }
+
+    @Test
+    public void matchesNaiveSums_onRandomPlaylist() {
+        Random random = new Random(42);
+        int n = 1000;
+        ShuffleEngine shuffle = new ShuffleEngine(n, random);
+        int[] order = shuffle.order();
+        long[] durations = new long[n];
+        for (int i = 0; i < n; i++) durations[i] = 1 + random.nextInt(600_000);
+
+        PlaylistTimeline timeline = new PlaylistTimeline(order, durations);
+        for (int k = 0; k < 200; k++) {
+            int track = random.nextInt(n);
+            durations[track] = 1 + random.nextInt(600_000);
+            timeline.setDuration(track, durations[track]);
+        }
+
+        long sum = 0;
+        for (int position = 0; position < n; position++) {
+            assertEquals(sum, timeline.prefix(position));
+            assertEquals(position, timeline.findPosition(sum));
+            sum += durations[order[position]];
+        }
+        assertEquals(sum, timeline.total());
+    }
+}
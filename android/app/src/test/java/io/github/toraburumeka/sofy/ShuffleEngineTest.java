@@ -0,0 +1,133 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class ShuffleEngineTest {
+
+    @Test
+    public void next_visitsEveryTrackOncePerCycle() {
+        ShuffleEngine shuffle = new ShuffleEngine(50, new Random(1));
+        Set<Integer> seen = new HashSet<>();
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(seen.add(shuffle.next()));
+        }
+        assertEquals(50, shuffle.position());
+    }
+
+    @Test
+    public void peekNext_matchesNext_acrossCycleBoundary() {
+        ShuffleEngine shuffle = new ShuffleEngine(5, new Random(2));
+
+        for (int i = 0; i < 23; i++) {
+            int peeked = shuffle.peekNext();
+            assertEquals(peeked, shuffle.next());
+        }
+    }
+
+    @Test
+    public void reshuffle_neverRepeatsBoundaryTrack() {
+        for (long seed = 0; seed < 200; seed++) {
+            ShuffleEngine shuffle = new ShuffleEngine(3, new Random(seed));
+            int last = -1;
+            for (int i = 0; i < 3 * 10; i++) {
+                int track = shuffle.next();
+                assertNotEquals(last, track);
+                last = track;
+            }
+        }
+    }
+
+    @Test
+    public void previous_walksBackThroughHistory() {
+        ShuffleEngine shuffle = new ShuffleEngine(10, new Random(3));
+        int first = shuffle.next();
+        int second = shuffle.next();
+        shuffle.next();
+
+        assertEquals(second, shuffle.previous());
+        assertEquals(first, shuffle.previous());
+        assertEquals(-1, shuffle.previous());
+        assertEquals(first, shuffle.current());
+        assertEquals(second, shuffle.next());
+    }
+
+    @Test
+    public void singleTrack_repeatsItself() {
+        ShuffleEngine shuffle = new ShuffleEngine(1, new Random(4));
+
+        assertEquals(0, shuffle.next());
+        assertEquals(0, shuffle.peekNext());
+        assertEquals(0, shuffle.next());
+    }
+
+    @Test
+    public void emptyPlaylist_returnsNoTrack() {
+        ShuffleEngine shuffle = new ShuffleEngine(0, new Random(5));
+
+        assertEquals(-1, shuffle.next());
+        assertEquals(-1, shuffle.peekNext());
+        assertEquals(-1, shuffle.current());
+    }
+
+    @Test
+    public void writeAndRead_restoresOrderAndCursor() throws Exception {
+        ShuffleEngine shuffle = new ShuffleEngine(20, new Random(6));
+        for (int i = 0; i < 7; i++) shuffle.next();
+
+        ShuffleEngine restored = ShuffleEngine.readFrom(roundTrip(shuffle), 20, new Random(7));
+
+        assertNotNull(restored);
+        assertEquals(shuffle.current(), restored.current());
+        assertEquals(shuffle.position(), restored.position());
+        for (int i = 0; i < 13; i++) {
+            assertEquals(shuffle.next(), restored.next());
+        }
+    }
+
+    @Test
+    public void cursorPatchedInPlace_restoresLaterPosition() throws Exception {
+        ShuffleEngine shuffle = new ShuffleEngine(20, new Random(10));
+        shuffle.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            shuffle.writeTo(out);
+        }
+
+        for (int i = 0; i < 4; i++) shuffle.next();
+        byte[] stored = bytes.toByteArray();
+        ByteBuffer.wrap(stored).putInt(ShuffleEngine.CURSOR_OFFSET, shuffle.cursor());
+
+        ShuffleEngine restored = ShuffleEngine.readFrom(
+            new DataInputStream(new ByteArrayInputStream(stored)), 20, new Random(11));
+        assertNotNull(restored);
+        assertEquals(shuffle.current(), restored.current());
+        assertEquals(5, restored.position());
+    }
+
+    @Test
+    public void read_rejectsOrderOfDifferentSize() throws Exception {
+        ShuffleEngine shuffle = new ShuffleEngine(20, new Random(8));
+
+        assertNull(ShuffleEngine.readFrom(roundTrip(shuffle), 21, new Random(9)));
+    }
+
+    private static DataInputStream roundTrip(ShuffleEngine shuffle) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            shuffle.writeTo(out);
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.toraburumeka.sofy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TrackRegistryTest {
+
+    @Test
+    public void register_resolvesStoredIds() {
+        TrackRegistry registry = new TrackRegistry();
+        registry.register(3, "stored");
+        registry.register(0, "first");
+
+        assertEquals("stored", registry.uri(3));
+        assertEquals("first", registry.uri(0));
+        assertNull(registry.uri(1));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void register_keepsFirstUriOfAnId() {
+        TrackRegistry registry = new TrackRegistry();
+        registry.register(0, "a");
+        registry.register(0, "b");
+        registry.register(-1, "c");
+
+        assertEquals("a", registry.uri(0));
+        assertNull(registry.uri(-1));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void register_keepsOldIdResolvableWhenUriGetsNewId() {
+        TrackRegistry registry = new TrackRegistry();
+        registry.register(4, "a");
+        registry.register(9, "a");
+
+        assertEquals("a", registry.uri(4));
+        assertEquals("a", registry.uri(9));
+    }
+
+    @Test
+    public void uris_resolvesViewWithoutCopying() {
+        TrackRegistry registry = new TrackRegistry();
+        registry.register(0, "a");
+        registry.register(1, "b");
+
+        List<String> view = registry.uris(new int[] { 1, 0, 1 });
+
+        assertEquals(Arrays.asList("b", "a", "b"), view);
+        try {
+            view.add("c");
+            fail("view should be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+}
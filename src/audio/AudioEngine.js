@@ -1,6 +1,7 @@
 import { Capacitor } from '@capacitor/core';
 import { Filesystem, Directory } from '@capacitor/filesystem';
 import { LinksStore } from '../data/LinksStore.js';
+import { LocalStorage } from '../utils/LocalStorage.js';
 import { StateManager } from '../data/StateManager.js';
 import { Logger } from '../utils/Logger.js';
 import { NativeAudioBridge } from './NativeAudioBridge.js';
@@ -39,7 +40,11 @@ export class AudioEngine {
     this.destroy();
     this.playlistId = playlistId;
 
-    const localPaths = LinksStore.getLocalPaths(playlistId);
+    let localPaths = LinksStore.getLocalPaths(playlistId);
+    if (!localPaths.length) {
+      LinksStore.setLocalPaths(playlistId, await LocalStorage.getTracks(playlistId));
+      localPaths = LinksStore.getLocalPaths(playlistId);
+    }
     if (!localPaths || !localPaths.length) {
       Logger.warn('AudioEngine', `No tracks found for playlist: ${playlistId}`);
       return false;
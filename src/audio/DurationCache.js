@@ -9,30 +9,15 @@ DurationCachePlugin.addListener('durationProgress', (data) => {
   StateManager.emit('durationProgress', data);
 });
 
-const CACHE_KEY_PREFIX = 'duration_cache_';
+const chunkHandlers = new Map();
+DurationCachePlugin.addListener('durationChunk', (data) => {
+  const handler = chunkHandlers.get(data.playlistId);
+  if (handler) handler(data.offset, data.durations);
+});
 
-export class DurationCache {
-  static async getCachedDurations(playlistId) {
-    try {
-      const { value } = await Preferences.get({ key: CACHE_KEY_PREFIX + playlistId });
-      if (value) {
-        const data = JSON.parse(value);
-        return data;
-      }
-    } catch (e) {}
-    return null;
-  }
-
-  static async saveDurations(playlistId, durations, totalDuration) {
-    try {
-      const data = { durations, totalDuration, timestamp: Date.now() };
-      await Preferences.set({
-        key: CACHE_KEY_PREFIX + playlistId,
-        value: JSON.stringify(data)
-      });
-    } catch (e) {}
-  }
+const LEGACY_CACHE_KEY_PREFIX = 'duration_cache_';
 
+export class DurationCache {
   static async calculateAndCacheDurations(playlistId, tracks) {
     if (!Capacitor.isNativePlatform() || !DurationCachePlugin) {
       return { durations: [], totalDuration: 0 };
@@ -42,7 +27,6 @@ export class DurationCache {
         tracks,
         playlistId 
       });
-      await this.saveDurations(playlistId, result.durations, result.totalDuration);
       return {
         durations: result.durations,
         totalDuration: result.totalDuration
@@ -52,17 +36,28 @@ export class DurationCache {
     }
   }
 
-  static async getDurationsForPlaylist(playlistId, tracks) {
-    const cached = await this.getCachedDurations(playlistId);
-    if (cached && cached.durations && cached.durations.length === tracks.length) {
-      return cached;
+  static async streamDurations(playlistId, tracks, onChunk) {
+    if (!Capacitor.isNativePlatform() || !DurationCachePlugin) {
+      return { totalDuration: 0 };
+    }
+    chunkHandlers.set(playlistId, onChunk);
+    try {
+      const result = await DurationCachePlugin.getDurations({
+        tracks,
+        playlistId,
+        stream: true
+      });
+      return { totalDuration: result.totalDuration };
+    } catch (e) {
+      return { totalDuration: 0 };
+    } finally {
+      if (chunkHandlers.get(playlistId) === onChunk) chunkHandlers.delete(playlistId);
     }
-    return await this.calculateAndCacheDurations(playlistId, tracks);
   }
 
-  static async clearCache(playlistId) {
+  static async removeLegacyCache(playlistId) {
     try {
-      await Preferences.remove({ key: CACHE_KEY_PREFIX + playlistId });
+      await Preferences.remove({ key: LEGACY_CACHE_KEY_PREFIX + playlistId });
     } catch (e) {}
   }
 }
\ No newline at end of file
@@ -8,6 +8,17 @@ if (Capacitor.isNativePlatform()) {
   NativeAudio = registerPlugin('NativeAudio');
 }
 
+function playlistRevision(tracks) {
+  let hash = 0x811c9dc5;
+  for (const track of tracks) {
+    for (let i = 0; i < track.length; i++) {
+      hash = Math.imul(hash ^ track.charCodeAt(i), 0x01000193);
+    }
+    hash = Math.imul(hash ^ 10, 0x01000193);
+  }
+  return `${tracks.length}:${(hash >>> 0).toString(16)}`;
+}
+
 export class NativeAudioBridge {
   constructor() {
     this.listeners = {
@@ -29,7 +40,8 @@ export class NativeAudioBridge {
       });
 
       await NativeAudio.addListener('metadataChanged', (data) => {
-          StateManager.emit('trackMetadataLoaded', { cover: data.cover });
+          const cover = data.coverPath ? Capacitor.convertFileSrc(`file://${data.coverPath}`) : null;
+          StateManager.emit('trackMetadataLoaded', { cover });
       });
 
     } catch (e) {}
@@ -52,17 +64,27 @@ export class NativeAudioBridge {
       return false;
     }
     try {
-      const durationData = await DurationCache.getDurationsForPlaylist(playlistId, tracks);
-      const durations = durationData.durations || [];
-      const totalDuration = durationData.totalDuration || 0;
-
-      await NativeAudio.loadPlaylist({
-        tracks,
-        durations,
-        totalDuration,
+      DurationCache.removeLegacyCache(playlistId);
+
+      const request = {
+        playlistId,
+        revision: playlistRevision(tracks),
         title,
         cover: coverUri || ''
-      });
+      };
+
+      // Native keeps registered playlists; only send the tracks when it does not have this revision.
+      let result = await NativeAudio.loadPlaylist(request);
+      if (!result || !result.loaded) {
+        result = await NativeAudio.loadPlaylist({ ...request, tracks, durations: [] });
+      }
+
+      // Durations reported for this revision stay in the native registry; only probe when some are missing.
+      if (!result || result.missingDurations !== 0) {
+        DurationCache.streamDurations(playlistId, tracks, (offset, durations) => {
+          NativeAudio.updateDurations({ playlistId, offset, durations }).catch(() => {});
+        });
+      }
       return true;
     } catch (e) {
       return false;
@@ -101,6 +123,48 @@ export class NativeAudioBridge {
     }
   }
 
+  async seekToPlaylistPosition(position) {
+    if (!NativeAudio) return;
+    try {
+      await NativeAudio.seekToPlaylistPosition({ position });
+    } catch (e) {
+    }
+  }
+
+  async previous() {
+    if (!NativeAudio) return;
+    try {
+      await NativeAudio.previous();
+    } catch (e) {
+    }
+  }
+
+  async setCrossfade(durationMs) {
+    if (!NativeAudio) return;
+    try {
+      await NativeAudio.setCrossfade({ durationMs });
+    } catch (e) {
+    }
+  }
+
+  async getCommandLatency(reset = false) {
+    if (!NativeAudio) return null;
+    try {
+      const { commands, audible } = await NativeAudio.getCommandLatency({ reset });
+      return { commands, audible };
+    } catch (e) {
+      return null;
+    }
+  }
+
+  async setTrackGap(gapMs) {
+    if (!NativeAudio) return;
+    try {
+      await NativeAudio.setTrackGap({ gapMs });
+    } catch (e) {
+    }
+  }
+
   isAvailable() {
     return NativeAudio !== null;
   }
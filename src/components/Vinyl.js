@@ -111,7 +111,7 @@ export class Vinyl {
               resolve();
           };
 
-          if (base64 && !base64.startsWith('data:image')) {
+          if (base64 && !/^(data:image|https?:|capacitor:|file:)/.test(base64)) {
               img.src = `data:image/jpeg;base64,${base64}`;
           } else {
               img.src = base64;
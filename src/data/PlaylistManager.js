@@ -6,23 +6,40 @@ import { StateManager } from './StateManager.js';
 import { DurationCache } from '../audio/DurationCache.js';
 
 export class PlaylistManager {
-  
+  static AUDIO_EXTENSIONS = ['mp3', 'ogg', 'm4a', 'wav', 'flac', 'aac'];
+  static IMAGE_EXTENSIONS = ['png', 'jpg', 'jpeg', 'webp'];
+
+  static getScanOptions() {
+    return {
+      recursive: true,
+      classify: true,
+      audioExtensions: this.AUDIO_EXTENSIONS,
+      imageExtensions: this.IMAGE_EXTENSIONS
+    };
+  }
+
   static async processNativeFolder(folderName, files) {
     const playlistId = `local_${Date.now()}`;
     StateManager.addLoadingPlaylist(playlistId, folderName);
-    return this.processScannedFolder(playlistId, folderName, files);
+    return this.processScannedFolder(playlistId, folderName, this.classifyFiles(files));
+  }
+
+  static classifyFiles(files) {
+    const tracks = [];
+    let cover = null;
+
+    for (const f of files) {
+      if (/\.(mp3|ogg|m4a|wav|flac|aac)$/i.test(f.name)) tracks.push(f);
+      else if (/\.(png|jpg|jpeg|webp)$/i.test(f.name) && !cover) cover = f;
+    }
+    return { tracks, cover };
   }
 
-  static async processScannedFolder(playlistId, folderName, files) {
+  static async processScannedFolder(playlistId, folderName, scanResult) {
     try {
       StateManager.updateLoadingProgress(playlistId, 5, 'scanning');
-      const audioFiles = [];
-      let coverUri = null;
-
-      for (const f of files) {
-        if (/\.(mp3|ogg|m4a|wav|flac|aac)$/i.test(f.name)) audioFiles.push(f.uri);
-        else if (/\.(png|jpg|jpeg|webp)$/i.test(f.name) && !coverUri) coverUri = f.uri;
-      }
+      const audioFiles = (scanResult.tracks || []).map(t => t.uri);
+      const coverUri = scanResult.cover ? scanResult.cover.uri : null;
 
       if (audioFiles.length === 0) throw new Error("No music files");
       if (!coverUri) throw new Error("No cover found");
@@ -48,6 +65,7 @@ export class PlaylistManager {
         title: folderName,
         coverPath: coverUri,
         trackPaths: audioFiles,
+        treeUri: scanResult.treeUri || null,
         createdAt: Date.now(),
         isLocal: true,
         totalDuration: durationResult.totalDuration
@@ -55,6 +73,7 @@ export class PlaylistManager {
 
       await LocalStorage.savePlaylist(playlistObj);
       await LinksStore.setLocalPaths(playlistId, audioFiles);
+      this.watchFolder(playlistObj.treeUri);
 
       StateManager.updateLoadingProgress(playlistId, 95, 'finalizing');
       
@@ -63,6 +82,7 @@ export class PlaylistManager {
         title: folderName,
         coverUrl: coverWebUrl,
         trackPaths: audioFiles,
+        treeUri: scanResult.treeUri || null,
         coverBase64: previewReadResult.data
       });
       
@@ -79,11 +99,9 @@ export class PlaylistManager {
         const index = playlists.findIndex(p => p.id === playlistId);
         
         if (index !== -1) {
-            const allSaved = await LocalStorage.getAllPlaylists();
-            const savedIndex = allSaved.findIndex(p => p.id === playlistId);
-            if (savedIndex !== -1) {
-                allSaved[savedIndex] = { ...allSaved[savedIndex], ...updates };
-                await LocalStorage.saveAllPlaylists(allSaved);
+            const saved = await LocalStorage.getPlaylist(playlistId);
+            if (saved) {
+                await LocalStorage.savePlaylist({ ...updates, id: playlistId });
                 return true;
             }
         }
@@ -93,6 +111,90 @@ export class PlaylistManager {
     }
   }
 
+  static async rescanPlaylist(playlistId) {
+    if (!Capacitor.isNativePlatform()) return null;
+
+    const saved = await LocalStorage.getPlaylist(playlistId);
+    if (!saved || !saved.treeUri) return null;
+
+    const { audioExtensions, imageExtensions } = this.getScanOptions();
+    const delta = await Capacitor.Plugins.FolderPicker.rescanFolder({
+      treeUri: saved.treeUri,
+      classify: true,
+      audioExtensions,
+      imageExtensions
+    });
+
+    await this.applyFolderDelta(saved, delta);
+    return delta;
+  }
+
+  static async applyFolderDelta(saved, delta) {
+    const playlistId = saved.id;
+    if (delta.added.length === 0 && delta.removed.length === 0 && delta.changed.length === 0) {
+      return;
+    }
+
+    const removed = new Set(delta.removed.map(f => f.uri));
+    const known = new Set(saved.trackPaths);
+    const trackPaths = saved.trackPaths
+      .filter(uri => !removed.has(uri))
+      .concat(delta.added.map(f => f.uri).filter(uri => !known.has(uri)));
+
+    const reprobe = delta.added.concat(delta.changed).map(f => f.uri);
+    if (reprobe.length > 0) {
+      await DurationCache.calculateAndCacheDurations(playlistId, reprobe);
+    }
+
+    await LocalStorage.savePlaylist({ id: playlistId, trackPaths });
+    await LinksStore.setLocalPaths(playlistId, trackPaths);
+    StateManager.addLocalPlaylistToState({ ...saved, trackPaths });
+  }
+
+  static async watchFolder(treeUri) {
+    if (!Capacitor.isNativePlatform() || !treeUri) return;
+
+    if (!this.folderChangedListener) {
+      this.folderChangedListener = Capacitor.Plugins.FolderPicker.addListener(
+        'folderChanged',
+        delta => this.onFolderChanged(delta)
+      );
+    }
+
+    const { audioExtensions, imageExtensions } = this.getScanOptions();
+    try {
+      await Capacitor.Plugins.FolderPicker.watchFolder({
+        treeUri,
+        classify: true,
+        audioExtensions,
+        imageExtensions
+      });
+    } catch (e) {
+    }
+  }
+
+  static async onFolderChanged(delta) {
+    const playlists = await LocalStorage.getAllPlaylists();
+    for (const pl of playlists) {
+      if (pl.isLocal && pl.treeUri === delta.treeUri) {
+        const saved = await LocalStorage.getPlaylist(pl.id);
+        if (saved) await this.applyFolderDelta(saved, delta);
+      }
+    }
+  }
+
+  static async rescanSavedPlaylists() {
+    const playlists = await LocalStorage.getAllPlaylists();
+    for (const pl of playlists) {
+      if (!pl.isLocal || !pl.treeUri) continue;
+      try {
+        await this.rescanPlaylist(pl.id);
+      } catch (e) {
+      }
+      await this.watchFolder(pl.treeUri);
+    }
+  }
+
   static async getCoverBase64(playlistId) {
     try {
       const file = await Filesystem.readFile({ path: `cover_${playlistId}.png`, directory: Directory.Data });
@@ -106,17 +208,20 @@ export class PlaylistManager {
 
       for (const pl of playlists) {
         if (pl.isLocal) {
-          await LinksStore.setLocalPaths(pl.id, pl.trackPaths);
+          // Native lists come without tracks; AudioEngine fetches them when the playlist is played.
+          if (pl.trackPaths) await LinksStore.setLocalPaths(pl.id, pl.trackPaths);
           StateManager.addLocalPlaylistToState({
             id: pl.id,
             title: pl.title,
             coverUrl: pl.coverUrl,
             isLocal: true,
             trackPaths: pl.trackPaths,
+            treeUri: pl.treeUri,
             colorData: pl.colorData 
           });
         }
       }
+      this.rescanSavedPlaylists();
     } catch (e) {
     }
   }
@@ -350,6 +350,7 @@ class StateManagerClass extends Phaser.Events.EventEmitter {
             isLoading: false,
             coverUrl: p.coverUrl,
             trackPaths: p.trackPaths,
+            treeUri: p.treeUri,
             colorData: p.colorData
         }));
         
@@ -386,6 +387,7 @@ class StateManagerClass extends Phaser.Events.EventEmitter {
       existing.coverUrl = playlistObj.coverUrl;
       existing.title = playlistObj.title;
       existing.trackPaths = trackPaths;
+      if (playlistObj.treeUri) existing.treeUri = playlistObj.treeUri;
       if (playlistObj.colorData) {
           existing.colorData = playlistObj.colorData;
           this.setColorData(playlistObj.id, playlistObj.colorData);
@@ -401,6 +403,7 @@ class StateManagerClass extends Phaser.Events.EventEmitter {
       isLoading: false,
       coverUrl: playlistObj.coverUrl,
       trackPaths: trackPaths,
+      treeUri: playlistObj.treeUri,
       colorData: playlistObj.colorData
     });
     
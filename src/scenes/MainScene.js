@@ -113,7 +113,7 @@ export class MainScene extends Phaser.Scene {
   }
 
   async loadTextureAndFinalize(data) {
-    const { id, title, coverUrl, trackPaths, coverBase64 } = data;
+    const { id, title, coverUrl, trackPaths, treeUri, coverBase64 } = data;
     const key = `preview_${id}`;
     
     try {
@@ -154,7 +154,8 @@ export class MainScene extends Phaser.Scene {
             StateManager.finishLoadingPlaylist(id, {
               title,
               coverUrl,
-              trackPaths
+              trackPaths,
+              treeUri
             });
           });
           
@@ -162,14 +163,14 @@ export class MainScene extends Phaser.Scene {
         };
         
         img.onerror = () => {
-          StateManager.finishLoadingPlaylist(id, { title, coverUrl, trackPaths });
+          StateManager.finishLoadingPlaylist(id, { title, coverUrl, trackPaths, treeUri });
           resolve();
         };
         img.src = `data:image/png;base64,${coverBase64}`;
       });
       
     } catch (e) {
-      StateManager.finishLoadingPlaylist(id, { title, coverUrl, trackPaths });
+      StateManager.finishLoadingPlaylist(id, { title, coverUrl, trackPaths, treeUri });
     }
   }
 
@@ -338,14 +339,16 @@ export class MainScene extends Phaser.Scene {
           );
 
           try {
-            const scanResult = await Capacitor.Plugins.FolderPicker.scanPendingFolder();
+            const scanResult = await Capacitor.Plugins.FolderPicker.scanPendingFolder(
+              PlaylistManager.getScanOptions()
+            );
             
             if (scanProgressListener && scanProgressListener.remove) {
               scanProgressListener.remove();
             }
             
-            if (scanResult && scanResult.files && scanResult.files.length > 0) {
-              PlaylistManager.processScannedFolder(playlistId, folderName, scanResult.files)
+            if (scanResult && scanResult.tracks && scanResult.tracks.length > 0) {
+              PlaylistManager.processScannedFolder(playlistId, folderName, scanResult)
                 .then(title => {
                   this.showMessage(`Added: ${title}`);
                 })
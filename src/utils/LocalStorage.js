@@ -1,9 +1,38 @@
+import { Capacitor, registerPlugin } from '@capacitor/core';
 import { Preferences } from '@capacitor/preferences';
 
+// Native builds keep playlists in an indexed SQLite library; the web build falls back to Preferences JSON.
+const PlaylistLibrary = Capacitor.isNativePlatform() ? registerPlugin('PlaylistLibrary') : null;
+
 export class LocalStorage {
   static KEY_PLAYLISTS = 'custom_playlists_meta';
+  static PAGE_SIZE = 50;
+
+  static toRecord(playlistObj, withTracks) {
+    const record = { id: playlistObj.id };
+    if (playlistObj.title !== undefined) record.title = playlistObj.title;
+    // A cleared cover is sent as null so the partial update drops the stored one.
+    if ('coverUrl' in playlistObj || 'coverPath' in playlistObj) {
+      record.coverUrl = playlistObj.coverUrl || playlistObj.coverPath || null;
+    }
+    if (playlistObj.treeUri !== undefined) record.treeUri = playlistObj.treeUri;
+    if (playlistObj.isLocal !== undefined) record.isLocal = !!playlistObj.isLocal;
+    if (playlistObj.createdAt !== undefined) record.createdAt = playlistObj.createdAt;
+    if (playlistObj.colorData !== undefined) record.colorData = playlistObj.colorData;
+    if (withTracks && playlistObj.trackPaths) record.trackPaths = playlistObj.trackPaths;
+    return record;
+  }
 
   static async savePlaylist(playlistObj) {
+    if (PlaylistLibrary) {
+      try {
+        await PlaylistLibrary.upsertPlaylists({ playlists: [this.toRecord(playlistObj, true)] });
+      } catch (e) {
+        console.error('LocalStorage', 'Failed to save playlist', e);
+      }
+      return;
+    }
+
     const current = await this.getAllPlaylists();
     const existingIndex = current.findIndex(p => p.id === playlistObj.id);
     
@@ -18,11 +47,20 @@ export class LocalStorage {
 
    static async saveAllPlaylists(playlists) {
     try {
+        if (PlaylistLibrary) {
+          // Order, metadata and deletions only; track lists are written by savePlaylist.
+          await PlaylistLibrary.syncPlaylists({
+            playlists: playlists.map(p => this.toRecord(p, false))
+          });
+          return;
+        }
+
         const dataToSave = playlists.map(p => ({
           id: p.id,
           title: p.title,
           coverUrl: p.coverUrl || p.coverPath,
           trackPaths: p.trackPaths || [],
+          treeUri: p.treeUri || null,
           isLocal: !!p.isLocal, 
           createdAt: p.createdAt || Date.now(),
           colorData: p.colorData || null 
@@ -38,7 +76,26 @@ export class LocalStorage {
     }
   }
 
-  static async getAllPlaylists() {
+  // Native returns metadata only unless includeTracks is set; use getTracks for one playlist's tracks.
+  static async getAllPlaylists({ includeTracks = false } = {}) {
+    if (PlaylistLibrary) {
+      const all = [];
+      try {
+        for (;;) {
+          const { playlists, total } = await PlaylistLibrary.getPlaylists({
+            offset: all.length,
+            limit: this.PAGE_SIZE,
+            includeTracks
+          });
+          all.push(...playlists);
+          if (playlists.length === 0 || all.length >= total) break;
+        }
+      } catch (e) {
+        console.error('LocalStorage', 'Failed to read playlists', e);
+      }
+      return all;
+    }
+
     const { value } = await Preferences.get({ key: this.KEY_PLAYLISTS });
     if (!value) return [];
     try {
@@ -48,7 +105,40 @@ export class LocalStorage {
     }
   }
 
+  static async getPlaylist(id) {
+    if (PlaylistLibrary) {
+      try {
+        const { playlist } = await PlaylistLibrary.getPlaylist({ id, includeTracks: true });
+        return playlist || null;
+      } catch (e) {
+        return null;
+      }
+    }
+
+    const current = await this.getAllPlaylists();
+    return current.find(p => p.id === id) || null;
+  }
+
+  static async getTracks(id) {
+    if (PlaylistLibrary) {
+      try {
+        const { tracks } = await PlaylistLibrary.getTracks({ id });
+        return tracks || [];
+      } catch (e) {
+        return [];
+      }
+    }
+
+    const playlist = await this.getPlaylist(id);
+    return (playlist && playlist.trackPaths) || [];
+  }
+
   static async removePlaylist(id) {
+    if (PlaylistLibrary) {
+      await PlaylistLibrary.deletePlaylists({ ids: [id] });
+      return;
+    }
+
     let current = await this.getAllPlaylists();
     current = current.filter(p => p.id !== id);
     await Preferences.set({
@@ -58,6 +148,11 @@ export class LocalStorage {
   }
 
   static async clearAll() {
+    if (PlaylistLibrary) {
+      await PlaylistLibrary.clear();
+      return;
+    }
+
     await Preferences.remove({ key: this.KEY_PLAYLISTS });
   }
 }
\ No newline at end of file